@@ -0,0 +1,39 @@
+#!/usr/bin/env bash
+# Runs the same long-lived connection load (LongPollLoadTest: long-poll desks, polling
+# dashboards, a steady producer) against the servlet backend and then the reactive one,
+# both with the same heap, writing
+#   results/stacks-servlet.json, results/stacks-reactive.json and results/stacks-memory.txt
+# (the server's resident memory at the end of each run). Build both backends first:
+#   (cd web-app/backend && mvn package -DskipTests)
+#   (cd web-app/backend-reactive && mvn package -DskipTests)
+# HEAP (256m), DESKS (1000), DASHBOARDS (1000), DURATION (30 s) and ENQUEUE_RATE (200/s)
+# tune the run. Several thousand sockets are opened, so the open-file limit is raised.
+set -euo pipefail
+cd "$(dirname "$0")"
+
+port=18080
+[ -f target/benchmarks.jar ] || mvn -q package
+mkdir -p results
+ulimit -n 65536 2>/dev/null || true
+: > results/stacks-memory.txt
+
+for stack in servlet reactive; do
+    if [ "$stack" = servlet ]; then
+        jar=../web-app/backend/target/queueinv-0.0.1-SNAPSHOT-exec.jar
+    else
+        jar=../web-app/backend-reactive/target/queueinv-reactive-0.0.1-SNAPSHOT-exec.jar
+    fi
+    java -Xmx"${HEAP:-256m}" -jar "$jar" --server.port=$port \
+        --queueinv.ratelimit.enabled=false > "results/server-$stack.log" 2>&1 &
+    pid=$!
+    trap 'kill $pid 2>/dev/null || true' EXIT
+    for _ in $(seq 60); do
+        curl -sf "http://localhost:$port/actuator/health" > /dev/null && break
+        sleep 1
+    done
+    java -cp target/benchmarks.jar com.example.queueinv.benchmarks.LongPollLoadTest "http://localhost:$port" \
+        "${DESKS:-1000}" "${DASHBOARDS:-1000}" "${DURATION:-30}" "${ENQUEUE_RATE:-200}" "results/stacks-$stack.json"
+    echo "$stack: $(ps -o rss= -p $pid | tr -d ' ') KB resident" | tee -a results/stacks-memory.txt
+    kill $pid
+    wait $pid 2>/dev/null || true
+done
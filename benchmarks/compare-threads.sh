@@ -0,0 +1,32 @@
+#!/usr/bin/env bash
+# Runs the same mixed inventory/login load (LoadTest) against the backend served on
+# platform threads and then on virtual threads, writing
+#   results/threads-platform.json and results/threads-virtual.json
+# Needs a Java 21 runtime and the backend built with the java21 profile:
+#   (cd web-app/backend && mvn -Pjava21 install -DskipTests)
+# USERS (400), DURATION (30 s) and LOGIN_PERCENT (10) tune the load. Rate limiting is
+# off, as every simulated user logs in as admin from one address.
+set -euo pipefail
+cd "$(dirname "$0")"
+
+jar=../web-app/backend/target/queueinv-0.0.1-SNAPSHOT-exec.jar
+port=18080
+[ -f target/benchmarks.jar ] || mvn -q package
+mkdir -p results
+
+for mode in platform virtual; do
+    virtual=false
+    [ "$mode" = virtual ] && virtual=true
+    java -jar "$jar" --server.port=$port --spring.threads.virtual.enabled=$virtual \
+        --queueinv.ratelimit.enabled=false > "results/server-$mode.log" 2>&1 &
+    pid=$!
+    trap 'kill $pid 2>/dev/null || true' EXIT
+    for _ in $(seq 60); do
+        curl -sf "http://localhost:$port/actuator/health" > /dev/null && break
+        sleep 1
+    done
+    java -cp target/benchmarks.jar com.example.queueinv.benchmarks.LoadTest "http://localhost:$port" \
+        "${USERS:-400}" "${DURATION:-30}" "${LOGIN_PERCENT:-10}" "results/threads-$mode.json"
+    kill $pid
+    wait $pid 2>/dev/null || true
+done
@@ -0,0 +1,19 @@
+#!/usr/bin/env bash
+# Runs every benchmark once per thread count and writes one JMH JSON result file per run:
+#   ./run.sh          -> results/<label>-t1.json, -t2.json, -t4.json
+#   ./run.sh 1 8 16   -> the same for 1, 8 and 16 threads
+# <label> defaults to `git describe`; set LABEL to override. Extra JMH options can be
+# passed in JMH_ARGS, e.g. JMH_ARGS="-p size=1000 StoreService".
+set -euo pipefail
+cd "$(dirname "$0")"
+
+threads=("$@")
+[ ${#threads[@]} -eq 0 ] && threads=(1 2 4)
+label="${LABEL:-$(git describe --always --dirty 2>/dev/null || echo local)}"
+
+[ -f target/benchmarks.jar ] || mvn -q package
+mkdir -p results
+for t in "${threads[@]}"; do
+    # shellcheck disable=SC2086
+    java -jar target/benchmarks.jar -t "$t" -rf json -rff "results/${label}-t${t}.json" ${JMH_ARGS:-}
+done
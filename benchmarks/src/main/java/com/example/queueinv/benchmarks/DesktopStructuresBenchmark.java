@@ -0,0 +1,90 @@
+package com.example.queueinv.benchmarks;
+
+import app.ArrayListMethods;
+import app.CustomerQueue;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The desktop app's inventory and queue. Both are meant for the Swing event thread
+ * only, so every benchmark thread gets its own copy: {@code -t N} shows how they
+ * scale across cores, not contention.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class DesktopStructuresBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    int size;
+
+    private ArrayListMethods inventory;
+    private CustomerQueue queue;
+    private String[] names;
+    private String[] queries;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        inventory = new ArrayListMethods();
+        queue = new CustomerQueue();
+        names = Fixtures.itemNames(size);
+        queries = Fixtures.queries(names);
+        for (int i = 0; i < size; i++) inventory.setQuantity(names[i], i % 100);
+        for (int i = 0; i < size; i++) queue.enqueue(new CustomerQueue.Customer("Customer " + i));
+    }
+
+    @Benchmark
+    public void addOrIncrement() {
+        inventory.addOrIncrement(Fixtures.pick(names), 1);
+    }
+
+    @Benchmark
+    public void setQuantity() {
+        inventory.setQuantity(Fixtures.pick(names), 7);
+    }
+
+    /** Removes an item and puts it back, so the inventory keeps its size. */
+    @Benchmark
+    public boolean removeAndRestore() {
+        String name = Fixtures.pick(names);
+        boolean removed = inventory.remove(name);
+        inventory.setQuantity(name, 1);
+        return removed;
+    }
+
+    @Benchmark
+    public List<ArrayListMethods.Item> listSorted() {
+        return inventory.list();
+    }
+
+    @Benchmark
+    public List<ArrayListMethods.Item> search() {
+        return inventory.search(Fixtures.pick(queries));
+    }
+
+    /** One table row, as the inventory table reads it while scrolling. */
+    @Benchmark
+    public ArrayListMethods.Item inventoryRow() {
+        return inventory.list().get(ThreadLocalRandom.current().nextInt(size));
+    }
+
+    /** One table row, as the queue table reads it while scrolling. */
+    @Benchmark
+    public CustomerQueue.Customer queueRow() {
+        return queue.get(ThreadLocalRandom.current().nextInt(size));
+    }
+
+    /** One customer in, one out, so the queue keeps its size. */
+    @Benchmark
+    public Optional<CustomerQueue.Customer> enqueueDequeue() {
+        queue.enqueue(new CustomerQueue.Customer("Walk-in"));
+        return queue.dequeue();
+    }
+}
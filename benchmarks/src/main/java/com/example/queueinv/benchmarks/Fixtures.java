@@ -0,0 +1,35 @@
+package com.example.queueinv.benchmarks;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/** Deterministic item names and search queries shared by the benchmarks. */
+final class Fixtures {
+
+    private static final int QUERIES = 1024;
+
+    private Fixtures() {}
+
+    /** {@code count} distinct item names, e.g. "Item-0004711". */
+    static String[] itemNames(int count) {
+        String[] names = new String[count];
+        for (int i = 0; i < count; i++) names[i] = String.format("Item-%07d", i);
+        return names;
+    }
+
+    /**
+     * Substring queries cut from existing names, so every one matches a handful of items
+     * whatever the catalog size (the last five digits of a random name).
+     */
+    static String[] queries(String[] names) {
+        String[] out = new String[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            String name = names[ThreadLocalRandom.current().nextInt(names.length)];
+            out[i] = name.substring(name.length() - 5);
+        }
+        return out;
+    }
+
+    static <T> T pick(T[] values) {
+        return values[ThreadLocalRandom.current().nextInt(values.length)];
+    }
+}
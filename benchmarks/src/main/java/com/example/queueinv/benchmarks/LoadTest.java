@@ -0,0 +1,189 @@
+package com.example.queueinv.benchmarks;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Closed-loop HTTP load against a running backend, for comparing request execution
+ * modes (platform vs virtual threads, see compare-threads.sh) rather than the data
+ * structures themselves.
+ * Each simulated user logs in as the default admin and then loops over a mix of
+ * requests: {@code loginPercent}% fresh logins (BCrypt-heavy), 20% inventory writes
+ * and the rest paged inventory reads. Latencies after the warm-up are written as JSON
+ * with throughput, p50, p99 and error counts per request type.
+ *
+ * <pre>
+ * LoadTest &lt;baseUrl&gt; [users=400] [seconds=30] [loginPercent=10] [out=results/load.json]
+ * </pre>
+ */
+public final class LoadTest {
+
+    private static final int WARMUP_SECONDS = 5;
+    private static final String LOGIN_BODY = "{\"username\":\"admin\",\"password\":\"Password123!\"}";
+    private static final String[] TYPES = {"login", "write", "read"};
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+    private final String baseUrl;
+    private final int loginPercent;
+
+    private LoadTest(String baseUrl, int loginPercent) {
+        this.baseUrl = baseUrl;
+        this.loginPercent = loginPercent;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("usage: LoadTest <baseUrl> [users=400] [seconds=30] [loginPercent=10] [out=results/load.json]");
+            System.exit(2);
+        }
+        String baseUrl = args[0];
+        int users = args.length > 1 ? Integer.parseInt(args[1]) : 400;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+        int loginPercent = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+        Path out = Path.of(args.length > 4 ? args[4] : "results/load.json");
+
+        LoadTest test = new LoadTest(baseUrl, loginPercent);
+        long measureFrom = System.nanoTime() + Duration.ofSeconds(WARMUP_SECONDS).toNanos();
+        long until = measureFrom + Duration.ofSeconds(seconds).toNanos();
+        List<User> all = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < users; i++) {
+            User u = test.new User(i, measureFrom, until);
+            all.add(u);
+            Thread t = new Thread(u, "load-user-" + i);
+            threads.add(t);
+            t.start();
+        }
+        for (Thread t : threads) t.join();
+
+        String json = report(users, seconds, loginPercent, all);
+        if (out.getParent() != null) Files.createDirectories(out.getParent());
+        Files.writeString(out, json);
+        System.out.println(json);
+    }
+
+    // One simulated client: its own session cookie and its own latency samples.
+    private final class User implements Runnable {
+        final int id;
+        final long measureFrom, until;
+        final Samples[] samples = {new Samples(), new Samples(), new Samples()};
+        String cookie;
+
+        User(int id, long measureFrom, long until) {
+            this.id = id;
+            this.measureFrom = measureFrom;
+            this.until = until;
+        }
+
+        @Override public void run() {
+            ThreadLocalRandom rnd = ThreadLocalRandom.current();
+            while (System.nanoTime() < until) {
+                int type = cookie == null || rnd.nextInt(100) < loginPercent ? 0 : rnd.nextInt(100) < 20 ? 1 : 2;
+                long start = System.nanoTime();
+                boolean ok;
+                try {
+                    ok = switch (type) {
+                        case 0 -> login();
+                        case 1 -> send(post("/api/inventory/addOrIncrement",
+                                "{\"name\":\"load-" + rnd.nextInt(1000) + "\",\"amount\":1}"));
+                        default -> send(get("/api/inventory?limit=100"));
+                    };
+                } catch (IOException e) {
+                    ok = false;
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long end = System.nanoTime();
+                if (start >= measureFrom && end <= until) samples[type].add(end - start, ok);
+            }
+        }
+
+        boolean login() throws IOException, InterruptedException {
+            HttpResponse<Void> res = client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/auth/login"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(LOGIN_BODY))
+                    .build(), HttpResponse.BodyHandlers.discarding());
+            res.headers().firstValue("Set-Cookie").ifPresent(c -> cookie = c.split(";", 2)[0]);
+            return res.statusCode() == 200;
+        }
+
+        HttpRequest get(String path) {
+            return request(path).GET().build();
+        }
+
+        HttpRequest post(String path, String json) {
+            return request(path).header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(json)).build();
+        }
+
+        HttpRequest.Builder request(String path) {
+            HttpRequest.Builder b = HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(Duration.ofSeconds(30));
+            if (cookie != null) b.header("Cookie", cookie);
+            return b;
+        }
+
+        boolean send(HttpRequest req) throws IOException, InterruptedException {
+            int status = client.send(req, HttpResponse.BodyHandlers.discarding()).statusCode();
+            if (status == 401) cookie = null; // session lost; log in again next round
+            return status < 400;
+        }
+    }
+
+    // Growable array of latencies in nanoseconds, plus an error count.
+    private static final class Samples {
+        long[] nanos = new long[1024];
+        int size;
+        int errors;
+
+        void add(long latency, boolean ok) {
+            if (!ok) {
+                errors++;
+                return;
+            }
+            if (size == nanos.length) nanos = Arrays.copyOf(nanos, size * 2);
+            nanos[size++] = latency;
+        }
+    }
+
+    private static String report(int users, int seconds, int loginPercent, List<User> all) {
+        StringBuilder json = new StringBuilder();
+        json.append(String.format(Locale.ROOT, "{%n  \"users\": %d,%n  \"seconds\": %d,%n  \"loginPercent\": %d,%n  \"ops\": {",
+                users, seconds, loginPercent));
+        for (int t = 0; t < TYPES.length; t++) {
+            long[] merged = new long[0];
+            int errors = 0;
+            for (User u : all) {
+                Samples s = u.samples[t];
+                int from = merged.length;
+                merged = Arrays.copyOf(merged, from + s.size);
+                System.arraycopy(s.nanos, 0, merged, from, s.size);
+                errors += s.errors;
+            }
+            Arrays.sort(merged);
+            json.append(String.format(Locale.ROOT,
+                    "%s%n    \"%s\": {\"count\": %d, \"perSecond\": %.1f, \"p50Ms\": %.3f, \"p99Ms\": %.3f, \"errors\": %d}",
+                    t == 0 ? "" : ",", TYPES[t], merged.length, merged.length / (double) seconds,
+                    percentile(merged, 0.50), percentile(merged, 0.99), errors));
+        }
+        return json.append(String.format("%n  }%n}%n")).toString();
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1)] / 1e6;
+    }
+}
@@ -0,0 +1,210 @@
+package com.example.queueinv.benchmarks;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Long-lived connection load against a running backend, for comparing the servlet and
+ * reactive builds (see compare-stacks.sh) on the patterns that keep connections open:
+ * {@code desks} service-desk clients each keep one long-poll dequeue waiting
+ * ({@code waitMs=10000}), {@code dashboards} clients each poll the queue listing once a
+ * second with If-None-Match, and one producer enqueues {@code enqueuePerSecond}
+ * customers. Requests are sent asynchronously, so the client needs no thread per
+ * connection. Latencies after the warm-up are written as JSON per request type, with
+ * how many requests were in flight at most.
+ *
+ * <pre>
+ * LongPollLoadTest &lt;baseUrl&gt; [desks=1000] [dashboards=1000] [seconds=30] [enqueuePerSecond=200] [out=results/longpoll.json]
+ * </pre>
+ */
+public final class LongPollLoadTest {
+
+    private static final int WARMUP_SECONDS = 5;
+    private static final int WAIT_MS = 10_000;
+    private static final String LOGIN_BODY = "{\"username\":\"admin\",\"password\":\"Password123!\"}";
+    private static final String[] TYPES = {"dequeue", "dequeueTimedOut", "dashboard", "enqueue"};
+    private static final int DEQUEUE = 0, DEQUEUE_TIMED_OUT = 1, DASHBOARD = 2, ENQUEUE = 3;
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+    private final ScheduledExecutorService timer = Executors.newScheduledThreadPool(2);
+    private final String baseUrl;
+    private final long measureFrom, until;
+    private final Samples[] samples = {new Samples(), new Samples(), new Samples(), new Samples()};
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+    private final AtomicLong enqueued = new AtomicLong();
+    private String cookie;
+
+    private LongPollLoadTest(String baseUrl, int seconds) {
+        this.baseUrl = baseUrl;
+        this.measureFrom = System.nanoTime() + Duration.ofSeconds(WARMUP_SECONDS).toNanos();
+        this.until = measureFrom + Duration.ofSeconds(seconds).toNanos();
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("usage: LongPollLoadTest <baseUrl> [desks=1000] [dashboards=1000] [seconds=30] "
+                    + "[enqueuePerSecond=200] [out=results/longpoll.json]");
+            System.exit(2);
+        }
+        String baseUrl = args[0];
+        int desks = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int dashboards = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 30;
+        int enqueueRate = args.length > 4 ? Integer.parseInt(args[4]) : 200;
+        Path out = Path.of(args.length > 5 ? args[5] : "results/longpoll.json");
+
+        LongPollLoadTest test = new LongPollLoadTest(baseUrl, seconds);
+        test.login();
+        for (int i = 0; i < desks; i++) test.desk();
+        for (int i = 0; i < dashboards; i++) test.new Dashboard().start();
+        test.timer.scheduleAtFixedRate(test::enqueue, 0, TimeUnit.SECONDS.toNanos(1) / enqueueRate, TimeUnit.NANOSECONDS);
+
+        // let the last long-polls come back before counting
+        long end = test.until + TimeUnit.MILLISECONDS.toNanos(WAIT_MS + 2000);
+        while (System.nanoTime() < end) Thread.sleep(200);
+        test.timer.shutdownNow();
+
+        String json = test.report(desks, dashboards, seconds, enqueueRate);
+        if (out.getParent() != null) Files.createDirectories(out.getParent());
+        Files.writeString(out, json);
+        System.out.println(json);
+        System.exit(0); // the HTTP client may still hold idle connections
+    }
+
+    private void login() throws IOException, InterruptedException {
+        HttpResponse<Void> res = client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/auth/login"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(LOGIN_BODY))
+                .build(), HttpResponse.BodyHandlers.discarding());
+        if (res.statusCode() != 200) throw new IOException("Login failed: " + res.statusCode());
+        cookie = res.headers().firstValue("Set-Cookie").map(c -> c.split(";", 2)[0]).orElseThrow();
+    }
+
+    // One desk: a long-poll dequeue, then another as soon as it returns, until the end.
+    private void desk() {
+        if (System.nanoTime() >= until) return;
+        long start = started();
+        client.sendAsync(request("/api/queue/dequeue?waitMs=" + WAIT_MS)
+                        .timeout(Duration.ofMillis(WAIT_MS + 30_000))
+                        .POST(HttpRequest.BodyPublishers.noBody()).build(),
+                HttpResponse.BodyHandlers.discarding())
+                .whenComplete((res, e) -> {
+                    int status = e == null ? res.statusCode() : -1;
+                    finished(status == 404 ? DEQUEUE_TIMED_OUT : DEQUEUE, start, status == 200 || status == 404);
+                    if (status == 200 || status == 404) desk();
+                    else timer.schedule(this::desk, 100, TimeUnit.MILLISECONDS); // back off after an error
+                });
+    }
+
+    // One dashboard: the queue listing once a second, sending the last ETag.
+    private final class Dashboard {
+        final AtomicBoolean busy = new AtomicBoolean();
+        volatile String etag;
+
+        void start() {
+            long offset = ThreadLocalRandom.current().nextLong(1000);
+            timer.scheduleAtFixedRate(this::poll, offset, 1000, TimeUnit.MILLISECONDS);
+        }
+
+        void poll() {
+            if (System.nanoTime() >= until || !busy.compareAndSet(false, true)) return;
+            HttpRequest.Builder b = request("/api/queue").timeout(Duration.ofSeconds(30)).GET();
+            if (etag != null) b.header("If-None-Match", etag);
+            long start = started();
+            client.sendAsync(b.build(), HttpResponse.BodyHandlers.discarding()).whenComplete((res, e) -> {
+                boolean ok = e == null && (res.statusCode() == 200 || res.statusCode() == 304);
+                if (ok) res.headers().firstValue("ETag").ifPresent(t -> etag = t);
+                finished(DASHBOARD, start, ok);
+                busy.set(false);
+            });
+        }
+    }
+
+    private void enqueue() {
+        if (System.nanoTime() >= until) return;
+        long start = started();
+        String body = "{\"name\":\"load-" + enqueued.incrementAndGet() + "\"}";
+        client.sendAsync(request("/api/queue/enqueue").timeout(Duration.ofSeconds(30))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(body)).build(),
+                HttpResponse.BodyHandlers.discarding())
+                .whenComplete((res, e) -> finished(ENQUEUE, start, e == null && res.statusCode() < 400));
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).header("Cookie", cookie);
+    }
+
+    private long started() {
+        peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        return System.nanoTime();
+    }
+
+    private void finished(int type, long start, boolean ok) {
+        long end = System.nanoTime();
+        inFlight.decrementAndGet();
+        if (start >= measureFrom && start < until) samples[type].add(end - start, ok);
+    }
+
+    // Growable array of latencies in nanoseconds, plus an error count; shared by callbacks.
+    private static final class Samples {
+        long[] nanos = new long[1024];
+        int size;
+        int errors;
+
+        synchronized void add(long latency, boolean ok) {
+            if (!ok) {
+                errors++;
+                return;
+            }
+            if (size == nanos.length) nanos = Arrays.copyOf(nanos, size * 2);
+            nanos[size++] = latency;
+        }
+
+        synchronized long[] sorted() {
+            long[] out = Arrays.copyOf(nanos, size);
+            Arrays.sort(out);
+            return out;
+        }
+    }
+
+    private String report(int desks, int dashboards, int seconds, int enqueueRate) {
+        StringBuilder json = new StringBuilder();
+        json.append(String.format(Locale.ROOT,
+                "{%n  \"desks\": %d,%n  \"dashboards\": %d,%n  \"seconds\": %d,%n  \"enqueuePerSecond\": %d,%n"
+                        + "  \"peakInFlight\": %d,%n  \"ops\": {",
+                desks, dashboards, seconds, enqueueRate, peakInFlight.get()));
+        for (int t = 0; t < TYPES.length; t++) {
+            long[] sorted = samples[t].sorted();
+            json.append(String.format(Locale.ROOT,
+                    "%s%n    \"%s\": {\"count\": %d, \"perSecond\": %.1f, \"p50Ms\": %.3f, \"p99Ms\": %.3f, \"errors\": %d}",
+                    t == 0 ? "" : ",", TYPES[t], sorted.length, sorted.length / (double) seconds,
+                    percentile(sorted, 0.50), percentile(sorted, 0.99), samples[t].errors));
+        }
+        return json.append(String.format("%n  }%n}%n")).toString();
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1)] / 1e6;
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.queueinv.benchmarks;
+
+import com.example.queueinv.CustomerDTO;
+import com.example.queueinv.ItemDTO;
+import com.example.queueinv.StoreService;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The web backend's in-memory store. One StoreService is shared by all benchmark
+ * threads, so running with {@code -t N} measures how the operations hold up under
+ * N concurrent callers. Sizes apply to both the inventory and the queue.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class StoreServiceBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    int size;
+
+    private StoreService store;
+    private String[] names;
+    private String[] queries;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        store = new StoreService();
+        names = Fixtures.itemNames(size);
+        queries = Fixtures.queries(names);
+        for (int i = 0; i < size; i++) store.setQuantity(names[i], i % 100);
+        for (int i = 0; i < size; i++) store.enqueue(new CustomerDTO("Customer " + i, ""));
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws IOException {
+        store.shutdown();
+    }
+
+    @Benchmark
+    public void addOrIncrement() {
+        store.addOrIncrement(Fixtures.pick(names), 1);
+    }
+
+    @Benchmark
+    public void setQuantity() {
+        store.setQuantity(Fixtures.pick(names), 7);
+    }
+
+    /** Removes an item and puts it back, so the catalog keeps its size. */
+    @Benchmark
+    public boolean removeAndRestore() {
+        String name = Fixtures.pick(names);
+        boolean removed = store.removeItem(name);
+        store.setQuantity(name, 1);
+        return removed;
+    }
+
+    @Benchmark
+    public List<ItemDTO> listSorted() {
+        return store.listItems();
+    }
+
+    @Benchmark
+    public List<ItemDTO> search() {
+        return store.searchItems(Fixtures.pick(queries));
+    }
+
+    /** One customer in, one out, so the queue keeps its size. */
+    @Benchmark
+    public Optional<CustomerDTO> enqueueDequeue() {
+        store.enqueue(new CustomerDTO("Walk-in", ""));
+        return store.dequeue();
+    }
+
+    /** Eight customers in, then served in one batch, so the queue keeps its size. */
+    @Benchmark
+    public List<CustomerDTO> enqueueDequeueBatch() {
+        for (int i = 0; i < 8; i++) store.enqueue(new CustomerDTO("Walk-in", ""));
+        return store.dequeue(null, 8);
+    }
+}
@@ -1,13 +1,29 @@
 package app;
 
+import java.util.AbstractList;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.CancellationException;
 
 /**
  * ArrayListMethods manages a simple inventory of (itemName -> quantity).
  * It provides safe helpers for CRUD-like operations.
+ *
+ * Items are found through a hash index on their lower-cased name and kept in name
+ * order in a treap (a randomly balanced search tree) that also counts the nodes below
+ * each node, so finding an item is O(1), adding, changing or removing one is
+ * O(log n), and {@link #list()} is a view rather than a sorted copy. Listeners are
+ * told the position in that view of every item added, changed or removed.
+ *
+ * This class is thread-unsafe on purpose (Swing EDT usage expected); a
+ * {@link #snapshot()} can be searched from any thread.
  */
 public class ArrayListMethods {
 
@@ -36,71 +52,315 @@ public class ArrayListMethods {
         }
     }
 
-    private final ArrayList<Item> items = new ArrayList<>();
+    private static final class Node {
+        final String key;     // lower-cased name, the sort key
+        final int priority;   // heap order on these keeps the tree balanced
+        final int generation; // see own()
+        Item item;
+        int size = 1;         // nodes in this subtree
+        Node left, right;
 
-    /** Return an immutable snapshot of items (sorted by name). */
+        Node(String key, Item item, int priority, int generation) {
+            this.key = key;
+            this.item = item;
+            this.priority = priority;
+            this.generation = generation;
+        }
+
+        Node copy(int generation) {
+            Node c = new Node(key, item, priority, generation);
+            c.size = size;
+            c.left = left;
+            c.right = right;
+            return c;
+        }
+    }
+
+    /**
+     * The inventory as it was when {@link #snapshot()} was taken. Later changes do not
+     * reach it, so it may be read from any thread, e.g. to search off the EDT.
+     */
+    public static final class Snapshot {
+        private final Node root;
+
+        private Snapshot(Node root) {
+            this.root = root;
+        }
+
+        public int size() { return ArrayListMethods.size(root); }
+
+        /**
+         * Items whose name contains the query (case-insensitive), sorted by name.
+         * Throws CancellationException if the thread is interrupted meanwhile.
+         */
+        public List<Item> search(String query) {
+            return ArrayListMethods.search(root, query);
+        }
+    }
+
+    private final HashMap<String, Item> index = new HashMap<>();
+    private final SplittableRandom random = new SplittableRandom();
+    private final List<ListChangeListener> listeners = new ArrayList<>();
+    private Node root;
+    private int generation; // bumped by snapshot()
+
+    private final List<Item> view = new AbstractList<>() {
+        @Override public Item get(int i) {
+            if (i < 0 || i >= size()) throw new IndexOutOfBoundsException(i);
+            return nodeAt(i).item;
+        }
+        @Override public int size() { return index.size(); }
+        @Override public Iterator<Item> iterator() { return new InOrder(root); }
+    };
+
+    /**
+     * Return a read-only view of the items sorted by name. It follows later changes
+     * rather than copying, so take a copy or a {@link #snapshot()} to keep them.
+     */
     public List<Item> list() {
-        ArrayList<Item> copy = new ArrayList<>(items);
-        copy.sort((a,b) -> a.getName().compareToIgnoreCase(b.getName()));
-        return Collections.unmodifiableList(copy);
+        return view;
+    }
+
+    /**
+     * Freeze the inventory as it is now, in O(1): the tree is shared with the
+     * snapshot, and later changes copy the few nodes they touch instead.
+     */
+    public Snapshot snapshot() {
+        generation++;
+        return new Snapshot(root);
+    }
+
+    /** Be told, by position in {@link #list()}, about every later change. */
+    public void addListener(ListChangeListener l) {
+        listeners.add(l);
     }
 
     /** Add a new item (or increase quantity if it already exists). */
     public void addOrIncrement(String name, int amount) {
         if (amount <= 0) throw new IllegalArgumentException("Amount must be positive");
-        int idx = indexOf(name);
-        if (idx >= 0) {
-            Item old = items.get(idx);
-            items.set(idx, old.withQuantity(old.getQuantity() + amount));
+        String key = key(name);
+        Item old = index.get(key);
+        if (old != null) {
+            replace(key, old.withQuantity(old.getQuantity() + amount));
         } else {
-            items.add(new Item(name, amount));
+            add(key, new Item(name, amount));
         }
     }
 
     /** Set the quantity of an item, creating it if missing. */
     public void setQuantity(String name, int quantity) {
-        int idx = indexOf(name);
-        if (idx >= 0) {
-            items.set(idx, items.get(idx).withQuantity(quantity));
+        String key = key(name);
+        Item old = index.get(key);
+        if (old != null) {
+            replace(key, old.withQuantity(quantity));
         } else {
-            items.add(new Item(name, quantity));
+            add(key, new Item(name, quantity));
         }
     }
 
     /** Remove an item by exact (case-insensitive) name. */
     public boolean remove(String name) {
-        int idx = indexOf(name);
-        if (idx >= 0) {
-            items.remove(idx);
-            return true;
-        }
-        return false;
+        String key = key(name);
+        if (index.remove(key) == null) return false;
+        int at = listeners.isEmpty() ? -1 : rank(key);
+        root = remove(root, key);
+        for (ListChangeListener l : listeners) l.removed(at);
+        return true;
     }
 
     /** Find an item by exact (case-insensitive) name. */
     public Optional<Item> find(String name) {
-        int idx = indexOf(name);
-        return idx >= 0 ? Optional.of(items.get(idx)) : Optional.empty();
+        return Optional.ofNullable(index.get(key(name)));
     }
 
-    /** Search items whose name contains the query (case-insensitive). */
+    /** Number of items. */
+    public int size() { return index.size(); }
+
+    /** Search items whose name contains the query (case-insensitive), sorted by name. */
     public List<Item> search(String query) {
-        String q = (query == null) ? "" : query.trim().toLowerCase();
+        return search(root, query);
+    }
+
+    private static List<Item> search(Node root, String query) {
+        String q = (query == null) ? "" : query.trim().toLowerCase(Locale.ROOT);
         ArrayList<Item> out = new ArrayList<>();
         if (q.isEmpty()) return out;
-        for (Item it : items) {
-            if (it.getName().toLowerCase().contains(q)) out.add(it);
+        InOrder it = new InOrder(root);
+        for (int seen = 1; it.hasNext(); seen++) {
+            if ((seen & 4095) == 0 && Thread.currentThread().isInterrupted()) {
+                throw new CancellationException("Search interrupted");
+            }
+            Node n = it.nextNode();
+            if (n.key.contains(q)) out.add(n.item);
         }
-        out.sort((a,b) -> a.getName().compareToIgnoreCase(b.getName()));
         return out;
     }
 
-    private int indexOf(String name) {
-        if (name == null) return -1;
-        String target = name.trim();
-        for (int i = 0; i < items.size(); i++) {
-            if (items.get(i).getName().equalsIgnoreCase(target)) return i;
+    // Index and tree key of a name: trimmed and lower-cased; null for no name at all.
+    private static String key(String name) {
+        return name == null ? null : name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private void add(String key, Item item) {
+        index.put(key, item);
+        root = insert(root, new Node(key, item, random.nextInt(), generation));
+        if (listeners.isEmpty()) return;
+        int at = rank(key);
+        for (ListChangeListener l : listeners) l.inserted(at);
+    }
+
+    private void replace(String key, Item item) {
+        index.put(key, item);
+        root = replace(root, key, item);
+        if (listeners.isEmpty()) return;
+        int at = rank(key);
+        for (ListChangeListener l : listeners) l.updated(at);
+    }
+
+    // Position of the node with this key, which must be present.
+    private int rank(String key) {
+        int before = 0;
+        Node t = root;
+        while (true) {
+            int c = key.compareTo(t.key);
+            if (c < 0) {
+                t = t.left;
+            } else if (c == 0) {
+                return before + size(t.left);
+            } else {
+                before += size(t.left) + 1;
+                t = t.right;
+            }
+        }
+    }
+
+    private Node nodeAt(int i) {
+        Node t = root;
+        while (true) {
+            int before = size(t.left);
+            if (i < before) {
+                t = t.left;
+            } else if (i == before) {
+                return t;
+            } else {
+                i -= before + 1;
+                t = t.right;
+            }
+        }
+    }
+
+    private static int size(Node t) { return t == null ? 0 : t.size; }
+
+    private static void resize(Node t) { t.size = 1 + size(t.left) + size(t.right); }
+
+    // Treap operations; recursion is as deep as the tree, O(log n) expected. Nodes
+    // from before the last snapshot may be shared with it, so they are changed only
+    // through own(), which copies them.
+
+    private Node own(Node t) {
+        return t.generation == generation ? t : t.copy(generation);
+    }
+
+    private Node insert(Node t, Node n) {
+        if (t == null) return n;
+        if (n.priority > t.priority) {
+            split(t, n);
+            resize(n);
+            return n;
+        }
+        t = own(t);
+        if (n.key.compareTo(t.key) < 0) {
+            t.left = insert(t.left, n);
+        } else {
+            t.right = insert(t.right, n);
+        }
+        t.size++;
+        return t;
+    }
+
+    // Splits t into the keys before and after n's, which become n's children.
+    private void split(Node t, Node n) {
+        if (t == null) {
+            n.left = n.right = null;
+            return;
+        }
+        t = own(t);
+        if (t.key.compareTo(n.key) < 0) {
+            split(t.right, n);
+            t.right = n.left;
+            resize(t);
+            n.left = t;
+        } else {
+            split(t.left, n);
+            t.left = n.right;
+            resize(t);
+            n.right = t;
+        }
+    }
+
+    // Puts a new item in the node with this key, which must be present.
+    private Node replace(Node t, String key, Item item) {
+        t = own(t);
+        int c = key.compareTo(t.key);
+        if (c == 0) {
+            t.item = item;
+        } else if (c < 0) {
+            t.left = replace(t.left, key, item);
+        } else {
+            t.right = replace(t.right, key, item);
+        }
+        return t;
+    }
+
+    // Removes the node with this key, which must be present.
+    private Node remove(Node t, String key) {
+        int c = key.compareTo(t.key);
+        if (c == 0) return merge(t.left, t.right);
+        t = own(t);
+        if (c < 0) {
+            t.left = remove(t.left, key);
+        } else {
+            t.right = remove(t.right, key);
+        }
+        t.size--;
+        return t;
+    }
+
+    // Joins two trees where every key in a is before every key in b.
+    private Node merge(Node a, Node b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        if (a.priority > b.priority) {
+            a = own(a);
+            a.right = merge(a.right, b);
+            resize(a);
+            return a;
+        }
+        b = own(b);
+        b.left = merge(a, b.left);
+        resize(b);
+        return b;
+    }
+
+    // Walks a tree in name order.
+    private static final class InOrder implements Iterator<Item> {
+        private final ArrayDeque<Node> path = new ArrayDeque<>();
+
+        InOrder(Node root) { descend(root); }
+
+        private void descend(Node t) {
+            for (; t != null; t = t.left) path.push(t);
+        }
+
+        @Override public boolean hasNext() { return !path.isEmpty(); }
+
+        @Override public Item next() { return nextNode().item; }
+
+        Node nextNode() {
+            if (path.isEmpty()) throw new NoSuchElementException();
+            Node n = path.pop();
+            descend(n.right);
+            return n;
         }
-        return -1;
     }
 }
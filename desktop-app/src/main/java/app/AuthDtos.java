@@ -0,0 +1,29 @@
+package app;
+
+/**
+ * Login and registration form data handed to AuthService.
+ */
+public final class AuthDtos {
+
+    private AuthDtos() {}
+
+    public static final class LoginDTO {
+        public final String username;
+        public final String password;
+
+        public LoginDTO(String username, String password) {
+            this.username = username;
+            this.password = password;
+        }
+    }
+
+    public static final class RegisterDTO {
+        public final String username;
+        public final String password;
+
+        public RegisterDTO(String username, String password) {
+            this.username = username;
+            this.password = password;
+        }
+    }
+}
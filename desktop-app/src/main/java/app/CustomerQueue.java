@@ -1,78 +1,325 @@
 package app;
 
-import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Deque;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CancellationException;
 
 /**
- * CustomerQueue models a simple FIFO queue of customers.
- * Each customer has a name and (optionally) a note (e.g., order or reason).
+ * CustomerQueue models a queue of customers in priority lanes (VIP, appointment,
+ * walk-in). Each lane is FIFO; the lanes take turns, each serving up to its weight
+ * in customers per turn (4, 2 and 1 by default), and a lane with nobody waiting is
+ * skipped. Each customer has a name and (optionally) a note (e.g., order or reason).
  *
- * This class is thread-unsafe on purpose (Swing EDT usage expected).
+ * The lanes are ring buffers, so a customer's place in the serving order can be
+ * worked out from the lane sizes: {@link #get(int)} answers in O(log n), and
+ * listeners are told which position each enqueue or dequeue touched.
+ *
+ * This class is thread-unsafe on purpose (Swing EDT usage expected); a
+ * {@link #snapshot()} can be searched from any thread.
  */
 public class CustomerQueue {
 
+    /** Queue lanes, most urgent first. */
+    public enum Priority {
+        VIP, APPOINTMENT, WALK_IN;
+
+        @Override public String toString() {
+            return switch (this) {
+                case VIP -> "VIP";
+                case APPOINTMENT -> "Appointment";
+                case WALK_IN -> "Walk-in";
+            };
+        }
+    }
+
     public static class Customer {
         private final String name;
         private final String note; // optional metadata
+        private final Priority priority;
 
         public Customer(String name) {
             this(name, "");
         }
 
         public Customer(String name, String note) {
+            this(name, note, Priority.WALK_IN);
+        }
+
+        public Customer(String name, String note, Priority priority) {
             if (name == null || name.isBlank()) {
                 throw new IllegalArgumentException("Customer name cannot be empty");
             }
             this.name = name.trim();
             this.note = note == null ? "" : note.trim();
+            this.priority = priority == null ? Priority.WALK_IN : priority;
         }
 
         public String getName() { return name; }
         public String getNote() { return note; }
+        public Priority getPriority() { return priority; }
 
         @Override public String toString() {
             return note.isEmpty() ? name : (name + " — " + note);
         }
     }
 
-    private final Deque<Customer> queue = new ArrayDeque<>();
+    private static final Priority[] LANES = Priority.values();
 
-    /** Add a customer to the end of the queue. */
-    public void enqueue(Customer c) { queue.addLast(c); }
+    // A FIFO that can also be read by index: a power-of-two circular array.
+    private static final class Lane {
+        private Customer[] buf = new Customer[16];
+        private int head;
+        int size;
+
+        void addLast(Customer c) {
+            if (size == buf.length) {
+                Customer[] grown = new Customer[buf.length * 2];
+                for (int i = 0; i < size; i++) grown[i] = get(i);
+                buf = grown;
+                head = 0;
+            }
+            buf[(head + size) & (buf.length - 1)] = c;
+            size++;
+        }
+
+        Customer pollFirst() {
+            if (size == 0) return null;
+            Customer c = buf[head];
+            buf[head] = null;
+            head = (head + 1) & (buf.length - 1);
+            size--;
+            return c;
+        }
+
+        Customer get(int i) { return buf[(head + i) & (buf.length - 1)]; }
+
+        Lane copy() {
+            Lane c = new Lane();
+            c.buf = buf.clone();
+            c.head = head;
+            c.size = size;
+            return c;
+        }
 
-    /** Remove and return the next customer, or empty if none. */
+        void clear() {
+            buf = new Customer[16];
+            head = size = 0;
+        }
+    }
+
+    private final Lane[] lanes = new Lane[LANES.length];
+    private final int[] weights = {4, 2, 1};
+    private int current;             // lane whose turn it is
+    private int left = weights[0];   // customers it may still take this turn
+    private int size;
+    private final List<ListChangeListener> listeners = new ArrayList<>();
+
+    public CustomerQueue() {
+        for (int i = 0; i < lanes.length; i++) lanes[i] = new Lane();
+    }
+
+    /** Be told, by position in serving order, about every later change. */
+    public void addListener(ListChangeListener l) {
+        listeners.add(l);
+    }
+
+    /** Set how many customers each lane (in Priority order) may take per turn; each at least 1. */
+    public void setWeights(int vip, int appointment, int walkIn) {
+        if (vip < 1 || appointment < 1 || walkIn < 1) {
+            throw new IllegalArgumentException("Lane weights must be at least 1");
+        }
+        weights[0] = vip;
+        weights[1] = appointment;
+        weights[2] = walkIn;
+        left = Math.min(left, weights[current]);
+        for (ListChangeListener l : listeners) l.reset();
+    }
+
+    /** Add a customer to the end of their lane. */
+    public void enqueue(Customer c) {
+        Lane lane = lanes[c.getPriority().ordinal()];
+        lane.addLast(c);
+        size++;
+        if (listeners.isEmpty()) return;
+        int pos = position(c.getPriority().ordinal(), lane.size - 1);
+        for (ListChangeListener l : listeners) l.inserted(pos);
+    }
+
+    /** Remove and return the customer whose turn it is, or empty if none. */
     public Optional<Customer> dequeue() {
-        Customer c = queue.pollFirst();
-        return Optional.ofNullable(c);
+        if (left <= 0 || lanes[current].size == 0) {
+            int lane = followingLane();
+            if (lane < 0) return Optional.empty();
+            current = lane;
+            left = weights[lane];
+        }
+        left--;
+        size--;
+        Customer c = lanes[current].pollFirst();
+        for (ListChangeListener l : listeners) l.removed(0);
+        return Optional.of(c);
+    }
+
+    /**
+     * Remove and return the first customer of one lane, ignoring turns. Everyone
+     * behind them in that lane may move into an earlier turn, so listeners get a reset.
+     */
+    public Optional<Customer> dequeue(Priority lane) {
+        Customer c = lanes[lane.ordinal()].pollFirst();
+        if (c == null) return Optional.empty();
+        size--;
+        for (ListChangeListener l : listeners) l.reset();
+        return Optional.of(c);
     }
 
-    /** View the next customer without removing, or empty if none. */
+    /** View the customer whose turn it is without removing, or empty if none. */
     public Optional<Customer> peek() {
-        return Optional.ofNullable(queue.peekFirst());
+        if (left > 0 && lanes[current].size > 0) return Optional.of(lanes[current].get(0));
+        int lane = followingLane();
+        return lane < 0 ? Optional.empty() : Optional.of(lanes[lane].get(0));
+    }
+
+    // The first lane after the current one (wrapping round to it) that has customers, or -1.
+    private int followingLane() {
+        for (int i = 1; i <= lanes.length; i++) {
+            int lane = (current + i) % lanes.length;
+            if (lanes[lane].size > 0) return lane;
+        }
+        return -1;
     }
 
     /** Remove all customers. */
-    public void clear() { queue.clear(); }
+    public void clear() {
+        for (Lane lane : lanes) lane.clear();
+        size = 0;
+        for (ListChangeListener l : listeners) l.reset();
+    }
 
     /** Current size of the queue. */
-    public int size() { return queue.size(); }
+    public int size() { return size; }
 
-    /** Find all customers whose name contains the query (case-insensitive). */
+    /** Find all customers whose name contains the query (case-insensitive), in serving order. */
     public List<Customer> searchByName(String query) {
         String q = (query == null) ? "" : query.trim().toLowerCase();
-        List<Customer> out = new ArrayList<>();
-        if (q.isEmpty()) return out;
-        for (Customer c : queue) {
-            if (c.getName().toLowerCase().contains(q)) out.add(c);
+        if (q.isEmpty()) return new ArrayList<>();
+        return inOrder(lanes, weights, current, left, size, q);
+    }
+
+    /** Return a snapshot of the queue in the order customers will be served. */
+    public List<Customer> toList() {
+        return inOrder(lanes, weights, current, left, size, null);
+    }
+
+    /**
+     * The queue as it was when {@link #snapshot()} was taken. Later changes do not
+     * reach it, so it may be read from any thread, e.g. to search off the EDT.
+     */
+    public static final class Snapshot {
+        private final Lane[] lanes;
+        private final int[] weights;
+        private final int current, left, size;
+
+        private Snapshot(CustomerQueue q) {
+            lanes = new Lane[q.lanes.length];
+            for (int i = 0; i < lanes.length; i++) lanes[i] = q.lanes[i].copy();
+            weights = q.weights.clone();
+            current = q.current;
+            left = q.left;
+            size = q.size;
+        }
+
+        public int size() { return size; }
+
+        /**
+         * Customers whose name contains the query (case-insensitive), in serving order.
+         * Throws CancellationException if the thread is interrupted meanwhile.
+         */
+        public List<Customer> searchByName(String query) {
+            String q = (query == null) ? "" : query.trim().toLowerCase();
+            if (q.isEmpty()) return new ArrayList<>();
+            return inOrder(lanes, weights, current, left, size, q);
+        }
+    }
+
+    /** Freeze the queue as it is now; this copies the lanes' arrays, not the customers. */
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    // Walks the lanes in serving order, keeping everyone or, given a lower-case query,
+    // those whose name contains it.
+    private static List<Customer> inOrder(Lane[] lanes, int[] weights, int current, int left, int size,
+                                          String query) {
+        List<Customer> out = new ArrayList<>(query == null ? size : 16);
+        int[] next = new int[lanes.length];
+        int lane = current;
+        int quota = left;
+        for (int seen = 0; seen < size; ) {
+            while (quota > 0 && next[lane] < lanes[lane].size) {
+                Customer c = lanes[lane].get(next[lane]++);
+                if (query == null || c.getName().toLowerCase().contains(query)) out.add(c);
+                quota--;
+                if ((++seen & 4095) == 0 && query != null && Thread.currentThread().isInterrupted()) {
+                    throw new CancellationException("Search interrupted");
+                }
+            }
+            lane = (lane + 1) % lanes.length;
+            quota = weights[lane];
         }
         return out;
     }
 
-    /** Return a snapshot (shallow copy) of the queue contents in order. */
-    public List<Customer> toList() {
-        return new ArrayList<>(queue);
+    /** The customer at this position in serving order, 0 being served next. */
+    public Customer get(int position) {
+        if (position < 0 || position >= size) throw new IndexOutOfBoundsException(position);
+        // the first round by whose end more than position customers have been served
+        long lo = 1, hi = (long) position + 2;
+        while (lo < hi) {
+            long mid = (lo + hi) >>> 1;
+            if (served(mid) > position) hi = mid; else lo = mid + 1;
+        }
+        long rest = position - served(lo - 1);
+        for (int i = 0; i < lanes.length; i++) {
+            int lane = (current + i) % lanes.length;
+            long before = served(lane, lo - 1);
+            long take = served(lane, lo) - before;
+            if (rest < take) return lanes[lane].get((int) (before + rest));
+            rest -= take;
+        }
+        throw new IllegalStateException("Position " + position + " not found");
+    }
+
+    // Serving goes in rounds: one turn per lane, starting with what is left of the
+    // current lane's turn. These count whole rounds, so they need no simulation.
+
+    // Customers of one lane served by the end of this many rounds.
+    private long served(int lane, long rounds) {
+        if (rounds == 0) return 0;
+        long quota = lane == current ? left + (rounds - 1) * weights[lane] : rounds * weights[lane];
+        return Math.min(lanes[lane].size, quota);
+    }
+
+    // Customers of all lanes served by the end of this many rounds.
+    private long served(long rounds) {
+        long n = 0;
+        for (int lane = 0; lane < lanes.length; lane++) n += served(lane, rounds);
+        return n;
+    }
+
+    // Where the customer at this index of this lane stands in serving order.
+    private int position(int lane, int index) {
+        long round;
+        if (lane != current) round = 1 + index / weights[lane];
+        else if (index < left) round = 1;
+        else round = 2 + (index - left) / weights[lane];
+        int turn = Math.floorMod(lane - current, lanes.length);
+        long pos = index;
+        for (int other = 0; other < lanes.length; other++) {
+            if (other == lane) continue;
+            boolean goesFirst = Math.floorMod(other - current, lanes.length) < turn;
+            pos += served(other, goesFirst ? round : round - 1);
+        }
+        return (int) pos;
     }
 }
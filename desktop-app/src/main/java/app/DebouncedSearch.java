@@ -0,0 +1,84 @@
+package app;
+
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Runs a search on a SwingWorker once requests have paused for {@link #DELAY_MS},
+ * so typing is never held up by it. Each request cancels the search before it; only
+ * the latest one's results are delivered. All methods, and both callbacks, run on
+ * the EDT: {@code prepare} takes what the search needs (a snapshot) and returns the
+ * work to run in the background, {@code deliver} gets the query and its results, and
+ * {@code fail} gets the query and what went wrong if the search threw instead.
+ */
+final class DebouncedSearch<R> {
+
+    static final int DELAY_MS = 150;
+
+    private final Function<String, Callable<R>> prepare;
+    private final BiConsumer<String, R> deliver;
+    private final BiConsumer<String, Throwable> fail;
+    private final Timer timer;
+    private String pending;
+    private SwingWorker<R, Void> running;
+
+    DebouncedSearch(Function<String, Callable<R>> prepare, BiConsumer<String, R> deliver,
+                    BiConsumer<String, Throwable> fail) {
+        this.prepare = prepare;
+        this.deliver = deliver;
+        this.fail = fail;
+        this.timer = new Timer(DELAY_MS, e -> start());
+        timer.setRepeats(false);
+    }
+
+    /** Search for this query once no other request has come for a moment. */
+    void request(String query) {
+        pending = query;
+        stopRunning();
+        timer.restart();
+    }
+
+    /** Drop any waiting or running search. */
+    void cancel() {
+        timer.stop();
+        pending = null;
+        stopRunning();
+    }
+
+    private void stopRunning() {
+        if (running != null) {
+            running.cancel(true);
+            running = null;
+        }
+    }
+
+    private void start() {
+        String query = pending;
+        if (query == null) return;
+        pending = null;
+        Callable<R> work = prepare.apply(query);
+        running = new SwingWorker<>() {
+            @Override protected R doInBackground() throws Exception {
+                return work.call();
+            }
+
+            @Override protected void done() {
+                if (running != this) return; // superseded or cancelled
+                running = null;
+                R results;
+                try {
+                    results = get();
+                } catch (InterruptedException | ExecutionException e) {
+                    fail.accept(query, e instanceof ExecutionException ? e.getCause() : e);
+                    return;
+                }
+                deliver.accept(query, results);
+            }
+        };
+        running.execute();
+    }
+}
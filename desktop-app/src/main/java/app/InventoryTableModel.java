@@ -0,0 +1,33 @@
+package app;
+
+import java.util.function.BiConsumer;
+
+/**
+ * The inventory table, in name order, read straight from the inventory's sorted view;
+ * a change fires an event for its own row only.
+ */
+final class InventoryTableModel extends SearchableTableModel<ArrayListMethods.Item> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final ArrayListMethods inventory;
+
+    InventoryTableModel(ArrayListMethods inventory, BiConsumer<String, Throwable> searchFailed) {
+        super(new String[]{"Item", "Qty"}, q -> {
+            ArrayListMethods.Snapshot snapshot = inventory.snapshot();
+            return () -> snapshot.search(q);
+        }, searchFailed);
+        this.inventory = inventory;
+        inventory.addListener(this);
+    }
+
+    @Override ArrayListMethods.Item liveRow(int row) { return inventory.list().get(row); }
+    @Override int liveSize() { return inventory.size(); }
+
+    @Override public Class<?> getColumnClass(int column) { return column == 0 ? String.class : Integer.class; }
+
+    @Override public Object getValueAt(int row, int column) {
+        ArrayListMethods.Item it = rowAt(row);
+        return column == 0 ? it.getName() : it.getQuantity();
+    }
+}
@@ -0,0 +1,20 @@
+package app;
+
+/**
+ * Told where an ordered collection changed, by position, right after the change,
+ * so a view of it can update just the rows concerned.
+ */
+public interface ListChangeListener {
+
+    /** An element now sits at this position; those after it moved down by one. */
+    void inserted(int index);
+
+    /** The element at this position changed in place. */
+    void updated(int index);
+
+    /** The element that was at this position is gone; those after it moved up by one. */
+    void removed(int index);
+
+    /** Anything may have changed. */
+    void reset();
+}
@@ -3,10 +3,8 @@ package app;
 import javax.swing.*;
 import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.awt.event.ActionEvent;
-import java.util.List;
 
 /**
  * A tidy Swing GUI that now includes a Login/Register panel
@@ -27,19 +25,16 @@ public class MainGUI extends JFrame {
     // --- App UI Components ---
     private final ArrayListMethods inventory = new ArrayListMethods();
     private final CustomerQueue queue = new CustomerQueue();
-    private final DefaultTableModel inventoryModel = new DefaultTableModel(new Object[]{"Item", "Qty"}, 0) {
-        @Override public boolean isCellEditable(int row, int column) { return false; }
-    };
+    private final InventoryTableModel inventoryModel = new InventoryTableModel(inventory, this::searchFailed);
     private final JTable inventoryTable = new JTable(inventoryModel);
     private final JTextField itemNameField = new JTextField();
     private final JSpinner itemQtyField = new JSpinner(new SpinnerNumberModel(1, 0, 100000, 1));
     private final JTextField searchItemField = new JTextField();
-    private final DefaultTableModel queueModel = new DefaultTableModel(new Object[]{"Name", "Note"}, 0) {
-        @Override public boolean isCellEditable(int row, int column) { return false; }
-    };
+    private final QueueTableModel queueModel = new QueueTableModel(queue, this::searchFailed);
     private final JTable queueTable = new JTable(queueModel);
     private final JTextField customerNameField = new JTextField();
     private final JTextField customerNoteField = new JTextField();
+    private final JComboBox<CustomerQueue.Priority> customerLaneField = new JComboBox<>(CustomerQueue.Priority.values());
     private final JTextField searchCustomerField = new JTextField();
 
     // --- Login UI Components ---
@@ -156,9 +151,6 @@ public class MainGUI extends JFrame {
             // SUCCESS: Switch to the main app panel
             loginErrorLabel.setText(" ");
             cardLayout.show(mainPanel, APP_PANEL);
-            // Load initial data *after* logging in
-            refreshInventoryTable();
-            refreshQueueTable();
         } else {
             // FAILED: Show error
             loginErrorLabel.setText("Invalid username or password.");
@@ -223,7 +215,6 @@ public class MainGUI extends JFrame {
                     inventory.addOrIncrement(n, q);
                     itemNameField.setText("");
                     itemQtyField.setValue(1);
-                    refreshInventoryTable();
                 } catch (Exception ex) {
                     JOptionPane.showMessageDialog(MainGUI.this, ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
                 }
@@ -239,7 +230,6 @@ public class MainGUI extends JFrame {
                 }
                 try {
                     inventory.setQuantity(n, q);
-                    refreshInventoryTable();
                 } catch (Exception ex) {
                     JOptionPane.showMessageDialog(MainGUI.this, ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
                 }
@@ -264,11 +254,10 @@ public class MainGUI extends JFrame {
             @Override public void actionPerformed(ActionEvent e) {
                 int row = inventoryTable.getSelectedRow();
                 if (row == -1) return;
-                String name = (String) inventoryModel.getValueAt(row, 0);
+                String name = inventoryModel.rowAt(row).getName();
                 try {
                     boolean ok = inventory.remove(name);
                     if (!ok) JOptionPane.showMessageDialog(MainGUI.this, "Item not found.");
-                    refreshInventoryTable();
                 } catch (Exception ex) {
                     JOptionPane.showMessageDialog(MainGUI.this, ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
                 }
@@ -276,7 +265,7 @@ public class MainGUI extends JFrame {
         });
         south.add(deleteBtn, BorderLayout.EAST);
 
-        searchItemField.getDocument().addDocumentListener(simple(() -> filterInventory(searchItemField.getText())));
+        searchItemField.getDocument().addDocumentListener(simple(() -> inventoryModel.filter(searchItemField.getText())));
 
         root.add(north, BorderLayout.NORTH);
         root.add(scroll, BorderLayout.CENTER);
@@ -289,11 +278,14 @@ public class MainGUI extends JFrame {
         root.setBorder(BorderFactory.createEmptyBorder(12,12,12,12));
 
         // Top form
-        JPanel form = new JPanel(new GridLayout(2,2,6,6));
+        JPanel form = new JPanel(new GridLayout(3,2,6,6));
         form.add(new JLabel("Customer name:"));
         form.add(customerNameField);
         form.add(new JLabel("Note (optional):"));
         form.add(customerNoteField);
+        form.add(new JLabel("Lane:"));
+        customerLaneField.setSelectedItem(CustomerQueue.Priority.WALK_IN);
+        form.add(customerLaneField);
 
         JPanel buttons = new JPanel(new FlowLayout(FlowLayout.LEFT, 8,0));
         buttons.add(new JButton(new AbstractAction("Enqueue") {
@@ -304,22 +296,20 @@ public class MainGUI extends JFrame {
                     JOptionPane.showMessageDialog(MainGUI.this, "Enter a customer name.");
                     return;
                 }
-                queue.enqueue(new CustomerQueue.Customer(name, note));
+                queue.enqueue(new CustomerQueue.Customer(name, note,
+                        (CustomerQueue.Priority) customerLaneField.getSelectedItem()));
                 customerNameField.setText("");
                 customerNoteField.setText("");
-                refreshQueueTable();
             }
         }));
         buttons.add(new JButton(new AbstractAction("Serve Next (Dequeue)") {
             @Override public void actionPerformed(ActionEvent e) {
                 queue.dequeue();
-                refreshQueueTable();
             }
         }));
         buttons.add(new JButton(new AbstractAction("Clear") {
             @Override public void actionPerformed(ActionEvent e) {
                 queue.clear();
-                refreshQueueTable();
             }
         }));
 
@@ -336,7 +326,7 @@ public class MainGUI extends JFrame {
         south.add(new JLabel("Search by name:"), BorderLayout.WEST);
         south.add(searchCustomerField, BorderLayout.CENTER);
 
-        searchCustomerField.getDocument().addDocumentListener(simple(() -> filterQueue(searchCustomerField.getText())));
+        searchCustomerField.getDocument().addDocumentListener(simple(() -> queueModel.filter(searchCustomerField.getText())));
 
         root.add(north, BorderLayout.NORTH);
         root.add(scroll, BorderLayout.CENTER);
@@ -344,44 +334,10 @@ public class MainGUI extends JFrame {
         return root;
     }
 
-    private void refreshInventoryTable() {
-        List<ArrayListMethods.Item> data = inventory.list();
-        inventoryModel.setRowCount(0);
-        for (ArrayListMethods.Item it : data) {
-            inventoryModel.addRow(new Object[]{ it.getName(), it.getQuantity() });
-        }
-    }
-
-    private void filterInventory(String q) {
-        if (q == null || q.isBlank()) {
-            refreshInventoryTable();
-            return;
-        }
-        List<ArrayListMethods.Item> data = inventory.search(q);
-        inventoryModel.setRowCount(0);
-        for (ArrayListMethods.Item it : data) {
-            inventoryModel.addRow(new Object[]{ it.getName(), it.getQuantity() });
-        }
-    }
-
-    private void refreshQueueTable() {
-        List<CustomerQueue.Customer> data = queue.toList();
-        queueModel.setRowCount(0);
-        for (CustomerQueue.Customer c : data) {
-            queueModel.addRow(new Object[]{ c.getName(), c.getNote() });
-        }
-    }
-
-    private void filterQueue(String q) {
-        if (q == null || q.isBlank()) {
-            refreshQueueTable();
-            return;
-        }
-        List<CustomerQueue.Customer> data = queue.searchByName(q);
-        queueModel.setRowCount(0);
-        for (CustomerQueue.Customer c : data) {
-            queueModel.addRow(new Object[]{ c.getName(), c.getNote() });
-        }
+    // A background search threw; the table keeps showing what it showed before.
+    private void searchFailed(String query, Throwable error) {
+        JOptionPane.showMessageDialog(this, "Search for '" + query + "' failed: " + error.getMessage(),
+                "Search Error", JOptionPane.ERROR_MESSAGE);
     }
 
     private static DocumentListener simple(Runnable onChange) {
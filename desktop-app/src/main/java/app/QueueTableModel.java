@@ -0,0 +1,36 @@
+package app;
+
+import java.util.function.BiConsumer;
+
+/**
+ * The queue table, in serving order, read straight from the queue by position: an
+ * enqueue inserts one row where that customer will be served and a dequeue deletes
+ * the first.
+ */
+final class QueueTableModel extends SearchableTableModel<CustomerQueue.Customer> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final CustomerQueue queue;
+
+    QueueTableModel(CustomerQueue queue, BiConsumer<String, Throwable> searchFailed) {
+        super(new String[]{"Name", "Note", "Lane"}, q -> {
+            CustomerQueue.Snapshot snapshot = queue.snapshot();
+            return () -> snapshot.searchByName(q);
+        }, searchFailed);
+        this.queue = queue;
+        queue.addListener(this);
+    }
+
+    @Override CustomerQueue.Customer liveRow(int row) { return queue.get(row); }
+    @Override int liveSize() { return queue.size(); }
+
+    @Override public Object getValueAt(int row, int column) {
+        CustomerQueue.Customer c = rowAt(row);
+        return switch (column) {
+            case 0 -> c.getName();
+            case 1 -> c.getNote();
+            default -> c.getPriority();
+        };
+    }
+}
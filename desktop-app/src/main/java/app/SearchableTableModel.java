@@ -0,0 +1,92 @@
+package app;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * A table over a live list that can also show search results. Rows are read straight
+ * from the list by position, so only the rows on screen are ever looked at, and each
+ * change fires an event for its own row only. While a search is shown, the rows are
+ * its results instead; searches run in the background on a snapshot, and again after
+ * each change. Subclasses say how to read the live list and what goes in each column.
+ */
+abstract class SearchableTableModel<T> extends AbstractTableModel implements ListChangeListener {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String[] columns;
+    private final DebouncedSearch<List<T>> search;
+    private String query = "";
+    private List<T> results; // null unless showing a search
+
+    /**
+     * {@code prepare} runs on the EDT: it takes a snapshot for the query and returns the
+     * search to run on it in the background. A search that fails is handed to
+     * {@code failed}, and the rows shown before it stay.
+     */
+    SearchableTableModel(String[] columns, Function<String, Callable<List<T>>> prepare,
+                         BiConsumer<String, Throwable> failed) {
+        this.columns = columns;
+        this.search = new DebouncedSearch<>(prepare, (q, rows) -> show(rows), failed);
+    }
+
+    /** The live row at this position, in the list's own order. */
+    abstract T liveRow(int row);
+
+    /** How many rows the live list has. */
+    abstract int liveSize();
+
+    /**
+     * Show only the rows matching the query, once the search has run, or all of them
+     * straight away when it is blank.
+     */
+    final void filter(String q) {
+        query = q == null ? "" : q.trim();
+        if (query.isEmpty()) {
+            search.cancel();
+            show(null);
+        } else {
+            search.request(query);
+        }
+    }
+
+    private void show(List<T> rows) {
+        results = rows;
+        fireTableDataChanged();
+    }
+
+    /** The row shown at this position, from the live list or the search results. */
+    final T rowAt(int row) {
+        return results == null ? liveRow(row) : results.get(row);
+    }
+
+    @Override public int getRowCount() { return results == null ? liveSize() : results.size(); }
+    @Override public int getColumnCount() { return columns.length; }
+    @Override public String getColumnName(int column) { return columns[column]; }
+
+    // The whole list is kept in step row by row; search results, shown or still to
+    // come, are searched for again.
+
+    @Override public void inserted(int index) {
+        if (results == null) fireTableRowsInserted(index, index);
+        if (!query.isEmpty()) search.request(query);
+    }
+
+    @Override public void updated(int index) {
+        if (results == null) fireTableRowsUpdated(index, index);
+        if (!query.isEmpty()) search.request(query);
+    }
+
+    @Override public void removed(int index) {
+        if (results == null) fireTableRowsDeleted(index, index);
+        if (!query.isEmpty()) search.request(query);
+    }
+
+    @Override public void reset() {
+        if (results == null) fireTableDataChanged();
+        if (!query.isEmpty()) search.request(query);
+    }
+}
@@ -0,0 +1,136 @@
+package app;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ArrayListMethodsTest {
+
+    // A copy of list() kept up to date only from what listeners are told.
+    static final class Mirror implements ListChangeListener {
+        final List<String> rows = new ArrayList<>();
+        final List<ArrayListMethods.Item> source;
+
+        Mirror(List<ArrayListMethods.Item> source) {
+            this.source = source;
+            reset();
+        }
+
+        @Override public void inserted(int index) { rows.add(index, text(source.get(index))); }
+        @Override public void updated(int index) { rows.set(index, text(source.get(index))); }
+        @Override public void removed(int index) { rows.remove(index); }
+        @Override public void reset() {
+            rows.clear();
+            for (ArrayListMethods.Item i : source) rows.add(text(i));
+        }
+    }
+
+    static String text(ArrayListMethods.Item i) {
+        return i.getName() + "=" + i.getQuantity();
+    }
+
+    private static List<String> texts(List<ArrayListMethods.Item> items) {
+        return items.stream().map(ArrayListMethodsTest::text).toList();
+    }
+
+    @Test
+    void staysSortedAndIndexableUnderRandomChanges() {
+        ArrayListMethods inv = new ArrayListMethods();
+        Mirror mirror = new Mirror(inv.list());
+        inv.addListener(mirror);
+        TreeMap<String, String> model = new TreeMap<>(); // key -> "name=qty"
+        Random rnd = new Random(42);
+
+        for (int step = 0; step < 5000; step++) {
+            String name = "Item" + rnd.nextInt(300);
+            if (rnd.nextBoolean()) name = name.toUpperCase();
+            String key = name.toLowerCase();
+            switch (rnd.nextInt(4)) {
+                case 0 -> {
+                    int amount = 1 + rnd.nextInt(5);
+                    inv.addOrIncrement(name, amount);
+                    String old = model.get(key);
+                    model.put(key, old == null ? name + "=" + amount
+                            : old.substring(0, old.indexOf('=') + 1) + (Integer.parseInt(old.substring(old.indexOf('=') + 1)) + amount));
+                }
+                case 1 -> {
+                    int qty = rnd.nextInt(10);
+                    inv.setQuantity(name, qty);
+                    String old = model.get(key);
+                    model.put(key, (old == null ? name : old.substring(0, old.indexOf('='))) + "=" + qty);
+                }
+                default -> assertEquals(model.remove(key) != null, inv.remove(name));
+            }
+
+            if (step % 50 == 0) {
+                List<String> expected = new ArrayList<>(model.values());
+                assertEquals(expected, texts(inv.list()));
+                assertEquals(expected.size(), inv.size());
+                for (int i = 0; i < expected.size(); i++) assertEquals(expected.get(i), text(inv.list().get(i)));
+            }
+            assertEquals(texts(inv.list()), mirror.rows, "after step " + step);
+        }
+    }
+
+    @Test
+    void findsByNameIgnoringCase() {
+        ArrayListMethods inv = new ArrayListMethods();
+        inv.addOrIncrement("  Green Tea ", 2);
+        inv.addOrIncrement("GREEN TEA", 3);
+        assertEquals(5, inv.find("green tea").orElseThrow().getQuantity());
+        assertEquals(1, inv.size());
+        assertTrue(inv.remove("Green tea"));
+        assertFalse(inv.find("green tea").isPresent());
+        assertFalse(inv.remove("green tea"));
+    }
+
+    @Test
+    void rejectsBadAmounts() {
+        ArrayListMethods inv = new ArrayListMethods();
+        assertThrows(IllegalArgumentException.class, () -> inv.addOrIncrement("tea", 0));
+        assertThrows(IllegalArgumentException.class, () -> inv.setQuantity("tea", -1));
+        assertThrows(IllegalArgumentException.class, () -> inv.setQuantity(" ", 1));
+        assertEquals(0, inv.size());
+    }
+
+    @Test
+    void searchIsSortedAndCaseInsensitive() {
+        ArrayListMethods inv = new ArrayListMethods();
+        for (String n : new String[]{"Oolong", "green tea", "Black Tea", "coffee", "Tealights"}) inv.addOrIncrement(n, 1);
+        assertEquals(List.of("Black Tea", "green tea", "Tealights"),
+                inv.search(" TEA").stream().map(ArrayListMethods.Item::getName).toList());
+        assertTrue(inv.search("  ").isEmpty());
+        assertTrue(inv.search(null).isEmpty());
+    }
+
+    @Test
+    void snapshotIsNotAffectedByLaterChanges() {
+        ArrayListMethods inv = new ArrayListMethods();
+        for (int i = 0; i < 200; i++) inv.addOrIncrement("tea " + i, i + 1);
+        ArrayListMethods.Snapshot snap = inv.snapshot();
+        List<String> before = texts(snap.search("tea"));
+
+        for (int i = 0; i < 200; i += 2) inv.remove("tea " + i);
+        for (int i = 1; i < 200; i += 2) inv.setQuantity("tea " + i, 0);
+        inv.addOrIncrement("tea extra", 1);
+
+        assertEquals(200, snap.size());
+        assertEquals(before, texts(snap.search("tea")));
+        assertEquals(101, inv.size());
+        assertEquals("tea 1=0", text(inv.find("tea 1").orElseThrow()));
+
+        // a second snapshot sees the changes, and still shares nothing it could break
+        ArrayListMethods.Snapshot later = inv.snapshot();
+        inv.remove("tea extra");
+        assertEquals(101, later.size());
+        assertEquals(200, snap.size());
+    }
+}
@@ -0,0 +1,156 @@
+package app;
+
+import app.CustomerQueue.Customer;
+import app.CustomerQueue.Priority;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CustomerQueueTest {
+
+    // A copy of the serving order kept up to date only from what listeners are told.
+    static final class Mirror implements ListChangeListener {
+        final List<Customer> rows = new ArrayList<>();
+        final CustomerQueue queue;
+
+        Mirror(CustomerQueue queue) {
+            this.queue = queue;
+            reset();
+        }
+
+        @Override public void inserted(int index) { rows.add(index, queue.get(index)); }
+        @Override public void updated(int index) { rows.set(index, queue.get(index)); }
+        @Override public void removed(int index) { rows.remove(index); }
+        @Override public void reset() {
+            rows.clear();
+            rows.addAll(queue.toList());
+        }
+    }
+
+    private static List<String> names(List<Customer> customers) {
+        return customers.stream().map(Customer::getName).toList();
+    }
+
+    private static CustomerQueue queueOf(int vip, int appointment, int walkIn) {
+        CustomerQueue q = new CustomerQueue();
+        for (int i = 0; i < vip; i++) q.enqueue(new Customer("v" + i, "", Priority.VIP));
+        for (int i = 0; i < appointment; i++) q.enqueue(new Customer("a" + i, "", Priority.APPOINTMENT));
+        for (int i = 0; i < walkIn; i++) q.enqueue(new Customer("w" + i, "", Priority.WALK_IN));
+        return q;
+    }
+
+    @Test
+    void lanesTakeTurnsByWeight() {
+        CustomerQueue q = queueOf(6, 3, 3);
+        List<String> expected = List.of("v0", "v1", "v2", "v3", "a0", "a1", "w0", "v4", "v5", "a2", "w1", "w2");
+        assertEquals(expected, names(q.toList()));
+        List<String> served = new ArrayList<>();
+        for (Optional<Customer> c; (c = q.dequeue()).isPresent(); ) served.add(c.get().getName());
+        assertEquals(expected, served);
+        assertEquals(0, q.size());
+    }
+
+    @Test
+    void emptyLanesAreSkipped() {
+        CustomerQueue q = queueOf(0, 0, 2);
+        assertEquals("w0", q.peek().orElseThrow().getName());
+        assertEquals("w0", q.dequeue().orElseThrow().getName());
+        q.enqueue(new Customer("v0", "", Priority.VIP));
+        assertEquals(List.of("v0", "w1"), names(q.toList()));
+        assertEquals("v0", q.get(0).getName());
+    }
+
+    @Test
+    void getMatchesServingOrderMidTurn() {
+        CustomerQueue q = queueOf(9, 5, 4);
+        q.dequeue();
+        q.dequeue(); // two into the VIP turn
+        List<Customer> order = q.toList();
+        for (int i = 0; i < order.size(); i++) assertSame(order.get(i), q.get(i), "position " + i);
+        assertThrows(IndexOutOfBoundsException.class, () -> q.get(order.size()));
+        assertThrows(IndexOutOfBoundsException.class, () -> q.get(-1));
+    }
+
+    @Test
+    void servingOrderHoldsUnderRandomChanges() {
+        CustomerQueue q = new CustomerQueue();
+        Mirror mirror = new Mirror(q);
+        q.addListener(mirror);
+        Random rnd = new Random(7);
+        int next = 0;
+
+        for (int step = 0; step < 4000; step++) {
+            int op = rnd.nextInt(20);
+            if (op < 10) {
+                q.enqueue(new Customer("c" + next++, "", Priority.values()[rnd.nextInt(3)]));
+            } else if (op < 17) {
+                List<Customer> before = q.toList();
+                Optional<Customer> peeked = q.peek();
+                Optional<Customer> served = q.dequeue();
+                assertEquals(before.isEmpty(), served.isEmpty());
+                if (served.isPresent()) {
+                    assertSame(before.get(0), served.get());
+                    assertSame(peeked.orElseThrow(), served.get());
+                    assertEquals(before.subList(1, before.size()), q.toList());
+                }
+            } else if (op < 19) {
+                Priority lane = Priority.values()[rnd.nextInt(3)];
+                Optional<Customer> served = q.dequeue(lane);
+                served.ifPresent(c -> assertEquals(lane, c.getPriority()));
+            } else {
+                q.setWeights(1 + rnd.nextInt(5), 1 + rnd.nextInt(5), 1 + rnd.nextInt(5));
+            }
+
+            List<Customer> order = q.toList();
+            assertEquals(order.size(), q.size());
+            assertEquals(order, mirror.rows, "after step " + step);
+            if (step % 20 == 0) {
+                for (int i = 0; i < order.size(); i++) assertSame(order.get(i), q.get(i), "position " + i);
+            }
+        }
+    }
+
+    @Test
+    void lanesGrowPastTheirFirstBuffer() {
+        CustomerQueue q = new CustomerQueue();
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 50; i++) q.enqueue(new Customer("w" + round + "-" + i));
+            for (int i = 0; i < 30; i++) q.dequeue();
+        }
+        List<Customer> order = q.toList();
+        assertEquals(60, order.size());
+        assertEquals("w1-40", order.get(0).getName());
+        for (int i = 0; i < order.size(); i++) assertSame(order.get(i), q.get(i));
+    }
+
+    @Test
+    void snapshotIsNotAffectedByLaterChanges() {
+        CustomerQueue q = queueOf(3, 3, 3);
+        CustomerQueue.Snapshot snap = q.snapshot();
+        List<String> before = names(snap.searchByName("0"));
+
+        q.dequeue();
+        q.clear();
+        q.enqueue(new Customer("v10", "", Priority.VIP));
+
+        assertEquals(9, snap.size());
+        assertEquals(List.of("v0", "a0", "w0"), before);
+        assertEquals(before, names(snap.searchByName("0")));
+        assertEquals(List.of("v10"), names(q.searchByName("V1")));
+    }
+
+    @Test
+    void rejectsWeightsBelowOne() {
+        CustomerQueue q = new CustomerQueue();
+        assertThrows(IllegalArgumentException.class, () -> q.setWeights(0, 1, 1));
+        assertTrue(q.toList().isEmpty());
+    }
+}
@@ -0,0 +1,254 @@
+package com.example.queueinv;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Valid;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.concurrent.Callable;
+
+/**
+ * ApiController's routes on WebFlux. Requests are answered on the event loop when
+ * that cannot stall it: cached listings, pages, positions and streams. Anything that
+ * can wait (for the log, or for a listing another request is rebuilding) or takes
+ * long (search, rebuilding a full listing) runs on the bounded elastic scheduler.
+ * A long-poll dequeue holds no thread at all while it waits.
+ * This build serves a single node: there is no sharding or rate limiting.
+ */
+@RestController
+@RequestMapping("/api")
+public class ReactiveApiController {
+
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    // events a slow client may fall behind by before its stream is ended; it then reconnects with Last-Event-ID
+    private static final int EVENT_BUFFER = 4096;
+
+    private final StoreService svc;
+    private final EncodedListing inventoryJson;
+    private final EncodedListing queueJson;
+    // versions restart from zero with the process, so ETags carry which process issued them
+    private final String etagPrefix = Long.toString(System.currentTimeMillis(), 36) + "-";
+
+    public ReactiveApiController(StoreService svc, ObjectMapper mapper) {
+        this.svc = svc;
+        this.inventoryJson = new EncodedListing(svc::inventoryVersion, svc::listItems, mapper);
+        this.queueJson = new EncodedListing(svc::queueVersion, svc::listQueue, mapper);
+    }
+
+    /* Change feed */
+    /**
+     * Server-sent events for every inventory and queue change, as in ApiController:
+     * {@code item}, {@code itemRemoved}, {@code enqueued}, {@code dequeued},
+     * {@code cleared} and {@code reset}.
+     */
+    @GetMapping(path = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Object>> events(@RequestHeader(name = "Last-Event-ID", required = false) String lastEventId) {
+        return Flux.<ServerSentEvent<Object>>create(sink -> {
+            ChangeFeed.Subscription sub = svc.changes().subscribe(lastEventId, new ChangeFeed.Sink() {
+                @Override public void send(String id, String type, Object data) throws IOException {
+                    if (sink.isCancelled()) throw new IOException("Client went away");
+                    sink.next(ServerSentEvent.builder(data).id(id).event(type).build());
+                }
+                @Override public void heartbeat() throws IOException {
+                    if (sink.isCancelled()) throw new IOException("Client went away");
+                    sink.next(ServerSentEvent.<Object>builder().comment("").build());
+                }
+            });
+            sink.onDispose(sub::cancel);
+        }).onBackpressureBuffer(EVENT_BUFFER);
+    }
+
+    /* Inventory */
+    /**
+     * Lists the inventory sorted by name: the whole catalog, or one page with
+     * {@code limit} and the next cursor in X-Next-Cursor. With an ETag; a matching
+     * If-None-Match gets 304 without the list being built.
+     */
+    @GetMapping("/inventory")
+    public Mono<ResponseEntity<?>> listInventory(@RequestParam(required = false) Integer limit,
+                                                 @RequestParam(required = false) String cursor,
+                                                 ServerWebExchange exchange) {
+        if (exchange.checkNotModified(variant(etagPrefix + svc.inventoryVersion(), limit == null, exchange))) {
+            return Mono.empty();
+        }
+        if (limit == null) return encoded(inventoryJson, exchange);
+        ItemPageDTO page = svc.listItems(cursor, limit);
+        ResponseEntity.BodyBuilder res = ResponseEntity.ok();
+        if (page.nextCursor() != null) res.header(NEXT_CURSOR_HEADER, page.nextCursor());
+        return Mono.just(res.body(page.items()));
+    }
+
+    /** Streams the sorted inventory as newline-delimited JSON, as fast as the client reads it. */
+    @GetMapping(path = "/inventory/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<ItemDTO> streamInventory() {
+        return Flux.fromIterable(svc.iterateItems());
+    }
+
+    @GetMapping("/inventory/search")
+    public Mono<List<ItemDTO>> searchInventory(@RequestParam String q) {
+        return offload(() -> svc.searchItems(q));
+    }
+
+    @PostMapping("/inventory/addOrIncrement")
+    public Mono<ResponseEntity<Void>> addOrIncrement(@Valid @RequestBody AddOrIncDTO body) {
+        return offload(() -> {
+            svc.addOrIncrement(body.name(), body.amount());
+            return ResponseEntity.noContent().build();
+        });
+    }
+
+    @PutMapping("/inventory/setQuantity")
+    public Mono<ResponseEntity<Void>> setQuantity(@Valid @RequestBody SetQtyDTO body) {
+        return offload(() -> {
+            svc.setQuantity(body.name(), body.qty());
+            return ResponseEntity.noContent().build();
+        });
+    }
+
+    /**
+     * Applies many inventory mutations in one request. Returns 200 with per-operation
+     * results, or 422 when an atomic batch was rejected and nothing was applied.
+     */
+    @PostMapping("/inventory/batch")
+    public Mono<ResponseEntity<BatchResultDTO>> batch(@Valid @RequestBody BatchRequestDTO body) {
+        return offload(() -> {
+            BatchResultDTO result = svc.applyBatch(body.ops(), body.atomic());
+            return result.applied()
+                    ? ResponseEntity.ok(result)
+                    : ResponseEntity.unprocessableEntity().body(result);
+        });
+    }
+
+    @DeleteMapping("/inventory/{name}")
+    public Mono<ResponseEntity<Void>> deleteItem(@PathVariable String name) {
+        return offload(() -> svc.removeItem(name)
+                ? ResponseEntity.noContent().<Void>build()
+                : ResponseEntity.notFound().<Void>build());
+    }
+
+    /* Queue */
+    /**
+     * The queue in serving order, or just one lane with {@code lane}, with an ETag; a
+     * matching If-None-Match gets 304 without the list being built.
+     */
+    @GetMapping("/queue")
+    public Mono<ResponseEntity<?>> listQueue(@RequestParam(required = false) Priority lane, ServerWebExchange exchange) {
+        if (exchange.checkNotModified(variant(etagPrefix + svc.queueVersion(), lane == null, exchange))) return Mono.empty();
+        return lane == null ? encoded(queueJson, exchange) : Mono.just(ResponseEntity.ok(svc.listQueue(lane)));
+    }
+
+    /** Streams the queue in order as newline-delimited JSON. */
+    @GetMapping(path = "/queue/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<CustomerDTO> streamQueue() {
+        return Flux.fromIterable(svc.iterateQueue());
+    }
+
+    @GetMapping("/queue/search")
+    public Mono<List<CustomerDTO>> searchQueue(@RequestParam String q) {
+        return offload(() -> svc.searchQueue(q));
+    }
+
+    @GetMapping("/queue/position")
+    public ResponseEntity<QueuePositionDTO> queuePosition(@RequestParam String name) {
+        OptionalLong pos = svc.queuePosition(name);
+        return pos.isPresent()
+                ? ResponseEntity.ok(new QueuePositionDTO(name.trim(), pos.getAsLong()))
+                : ResponseEntity.notFound().build();
+    }
+
+    /** Adds a customer to the lane of its {@code priority}; the query parameter overrides the body's. */
+    @PostMapping("/queue/enqueue")
+    public Mono<ResponseEntity<Void>> enqueue(@Valid @RequestBody CustomerDTO body,
+                                              @RequestParam(required = false) Priority priority) {
+        CustomerDTO c = priority == null ? body : new CustomerDTO(body.name(), body.note(), priority);
+        return offload(() -> {
+            svc.enqueue(c);
+            return ResponseEntity.noContent().build();
+        });
+    }
+
+    /**
+     * Serves the customer whose turn it is, or the head of one lane with {@code lane}.
+     * With {@code waitMs}, an empty queue answers 404 only after that long unless a
+     * customer arrives first; nothing is blocked meanwhile.
+     */
+    @PostMapping("/queue/dequeue")
+    public Mono<ResponseEntity<CustomerDTO>> dequeue(@RequestParam(required = false) Priority lane,
+                                                     @RequestParam(required = false) Long waitMs) {
+        if (waitMs == null) return offload(() -> ResponseEntity.of(svc.dequeue(lane)));
+        // cancelling the future when the client goes away withdraws the wait
+        return offload(() -> svc.dequeue(lane, waitMs))
+                .flatMap(Mono::fromFuture)
+                .map(ResponseEntity::of);
+    }
+
+    /** Serves up to {@code max} customers at once; an empty list when nobody waits. */
+    @PostMapping(path = "/queue/dequeue", params = "max")
+    public Mono<List<CustomerDTO>> dequeueMany(@RequestParam(required = false) Priority lane, @RequestParam int max,
+                                               @RequestParam(required = false) Long waitMs) {
+        if (waitMs != null) throw new InvalidRequestException("max cannot be combined with waitMs");
+        return offload(() -> svc.dequeue(lane, max));
+    }
+
+    @DeleteMapping("/queue")
+    public Mono<ResponseEntity<Void>> clearQueue() {
+        return offload(() -> {
+            svc.clearQueue();
+            return ResponseEntity.noContent().build();
+        });
+    }
+
+    // The ETag of what encoded() sends: a gzip body gets its own tag, as in ApiController.
+    private static String variant(String etag, boolean encoded, ServerWebExchange exchange) {
+        return encoded && acceptsGzip(exchange.getRequest().getHeaders().getFirst(HttpHeaders.ACCEPT_ENCODING))
+                ? etag + "-gz"
+                : etag;
+    }
+
+    // A cached listing as is, gzipped for clients that accept it. Only a stale one is
+    // rebuilt off the event loop.
+    private static Mono<ResponseEntity<?>> encoded(EncodedListing listing, ServerWebExchange exchange) {
+        boolean gzip = acceptsGzip(exchange.getRequest().getHeaders().getFirst(HttpHeaders.ACCEPT_ENCODING));
+        EncodedListing.Body body = listing.fresh();
+        if (body != null) return Mono.just(respond(body, gzip));
+        return offload(() -> respond(listing.get(), gzip));
+    }
+
+    private static ResponseEntity<?> respond(EncodedListing.Body body, boolean acceptsGzip) {
+        ResponseEntity.BodyBuilder res = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        byte[] gzip = acceptsGzip ? body.gzip() : null;
+        if (gzip == null) return res.body(body.json);
+        return res.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(gzip);
+    }
+
+    // Whether Accept-Encoding lists gzip without ruling it out by q=0.
+    private static boolean acceptsGzip(String accept) {
+        if (accept == null) return false;
+        for (String coding : accept.split(",")) {
+            String[] parts = coding.split(";");
+            if (!parts[0].trim().equalsIgnoreCase("gzip")) continue;
+            for (int i = 1; i < parts.length; i++) {
+                String p = parts[i].trim();
+                if (p.startsWith("q=") && p.substring(2).matches("0(\\.0*)?")) return false;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static <T> Mono<T> offload(Callable<T> work) {
+        return Mono.fromCallable(work).subscribeOn(Schedulers.boundedElastic());
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.queueinv;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.web.reactive.config.CorsRegistry;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+
+import java.util.Map;
+
+/**
+ * The same API as {@code Application}, served by WebFlux on Netty: the store and auth
+ * service are shared with the servlet backend, the web layer is ReactiveApiController,
+ * ReactiveAuthController and ReactiveSecurityConfig.
+ */
+@SpringBootApplication
+public class ReactiveApplication {
+    public static void main(String[] args) {
+        SpringApplication app = new SpringApplication(ReactiveApplication.class);
+        // only health and the Prometheus scrape are exposed unless overridden
+        app.setDefaultProperties(Map.of("management.endpoints.web.exposure.include", "health,prometheus"));
+        app.run(args);
+    }
+
+    @Bean
+    public WebFluxConfigurer corsConfigurer() {
+        return new WebFluxConfigurer() {
+            @Override
+            public void addCorsMappings(CorsRegistry registry) {
+                registry.addMapping("/api/**")
+                        .allowedOrigins("http://localhost:5173", "http://localhost:3000")
+                        .allowedMethods("GET","POST","PUT","DELETE","OPTIONS")
+                        .allowedHeaders("*")
+                        .exposedHeaders(ReactiveApiController.NEXT_CURSOR_HEADER, "ETag");
+            }
+        };
+    }
+}
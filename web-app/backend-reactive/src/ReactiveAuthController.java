@@ -0,0 +1,78 @@
+package com.example.queueinv;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.validation.Valid;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.web.server.context.ServerSecurityContextRepository;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebSession;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * AuthController's endpoints on WebFlux. Password hashing never runs on the event loop:
+ * registration hashes on the bounded elastic scheduler, and the authentication manager
+ * checks passwords there too.
+ */
+@RestController
+@RequestMapping("/api/auth")
+public class ReactiveAuthController {
+
+    private final AuthService authService;
+    private final ReactiveAuthenticationManager authenticationManager;
+    private final ServerSecurityContextRepository securityContextRepository;
+    private final Counter loginSucceeded;
+    private final Counter loginFailed;
+
+    public ReactiveAuthController(AuthService authService,
+                                  ReactiveAuthenticationManager authenticationManager,
+                                  ServerSecurityContextRepository securityContextRepository,
+                                  MeterRegistry registry) {
+        this.authService = authService;
+        this.authenticationManager = authenticationManager;
+        this.securityContextRepository = securityContextRepository;
+        this.loginSucceeded = registry.counter("queueinv.auth.logins", "result", "success");
+        this.loginFailed = registry.counter("queueinv.auth.logins", "result", "failure");
+    }
+
+    /**
+     * Endpoint for new user registration.
+     */
+    @PostMapping("/register")
+    public Mono<ResponseEntity<AuthResponseDTO>> register(@Valid @RequestBody RegisterDTO registerDTO) {
+        return Mono.fromRunnable(() -> authService.register(registerDTO))
+                .subscribeOn(Schedulers.boundedElastic())
+                .then(Mono.fromSupplier(() -> ResponseEntity
+                        .status(HttpStatus.CREATED)
+                        .body(new AuthResponseDTO(registerDTO.username(), "User registered successfully."))));
+    }
+
+    /**
+     * Endpoint for user login: authenticates the user and keeps the login in the
+     * session, under a new session id.
+     */
+    @PostMapping("/login")
+    public Mono<ResponseEntity<AuthResponseDTO>> login(@Valid @RequestBody LoginDTO loginDTO, ServerWebExchange exchange) {
+        UsernamePasswordAuthenticationToken token =
+                new UsernamePasswordAuthenticationToken(loginDTO.username(), loginDTO.password());
+        return authenticationManager.authenticate(token)
+                .doOnError(AuthenticationException.class, e -> loginFailed.increment())
+                .flatMap(authentication -> {
+                    loginSucceeded.increment();
+                    return exchange.getSession()
+                            .flatMap(WebSession::changeSessionId)
+                            .then(securityContextRepository.save(exchange, new SecurityContextImpl(authentication)));
+                })
+                .thenReturn(ResponseEntity.ok(new AuthResponseDTO(loginDTO.username(), "Login successful.")));
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.queueinv;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.FieldError;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.bind.support.WebExchangeBindException;
+import org.springframework.web.server.ServerWebInputException;
+
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * The WebFlux forms of the request errors GlobalExceptionHandler answers for the
+ * servlet backend; everything else is still handled there.
+ */
+@RestControllerAdvice
+public class ReactiveExceptionHandler {
+
+    /**
+     * Handles validation errors from DTOs.
+     * Returns a 400 Bad Request with a map of fields and errors.
+     */
+    @ExceptionHandler(WebExchangeBindException.class)
+    public ResponseEntity<Map<String, String>> handleValidationExceptions(WebExchangeBindException ex) {
+        Map<String, String> errors = ex.getBindingResult().getAllErrors().stream()
+                .collect(Collectors.toMap(
+                        error -> ((FieldError) error).getField(),
+                        error -> error.getDefaultMessage() != null ? error.getDefaultMessage() : "Invalid value"
+                ));
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("errors", errors.toString()));
+    }
+
+    /**
+     * Handles request bodies that are not valid JSON or do not fit the DTO, and query
+     * parameters of the wrong type (e.g. an unknown queue lane).
+     * Returns a 400 Bad Request.
+     */
+    @ExceptionHandler(ServerWebInputException.class)
+    public ResponseEntity<Map<String, String>> handleServerWebInputException(ServerWebInputException ex) {
+        String error = ex.getReason() != null ? ex.getReason() : "Malformed request";
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("error", error));
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.queueinv;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.authentication.UserDetailsRepositoryReactiveAuthenticationManager;
+import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.core.userdetails.ReactiveUserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.security.web.server.authentication.HttpStatusServerEntryPoint;
+import org.springframework.security.web.server.context.ServerSecurityContextRepository;
+import org.springframework.security.web.server.context.WebSessionServerSecurityContextRepository;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import static org.springframework.http.HttpStatus.UNAUTHORIZED;
+
+/**
+ * SecurityConfig's rules for the reactive build. The login is kept in the WebSession;
+ * signed-token mode is servlet-only for now.
+ */
+@Configuration
+@EnableWebFluxSecurity
+public class ReactiveSecurityConfig {
+
+    /** Where a login is kept between requests. */
+    @Bean
+    public ServerSecurityContextRepository securityContextRepository() {
+        return new WebSessionServerSecurityContextRepository();
+    }
+
+    /**
+     * Checks passwords against AuthService's users with the shared encoder, off the
+     * event loop, and rehashes them when the configured BCrypt cost has changed.
+     * An unknown user is reported like a wrong password.
+     */
+    @Bean
+    public ReactiveAuthenticationManager authenticationManager(AuthService authService, PasswordEncoder passwordEncoder) {
+        ReactiveUserDetailsService users = username -> Mono.fromCallable(() -> authService.loadUserByUsername(username))
+                .onErrorResume(UsernameNotFoundException.class, e -> Mono.empty());
+        UserDetailsRepositoryReactiveAuthenticationManager manager = new UserDetailsRepositoryReactiveAuthenticationManager(users);
+        manager.setPasswordEncoder(passwordEncoder);
+        manager.setUserDetailsPasswordService((user, newPassword) ->
+                Mono.fromCallable(() -> authService.updatePassword(user, newPassword)).subscribeOn(Schedulers.boundedElastic()));
+        return manager;
+    }
+
+    /**
+     * The same HTTP rules as the servlet backend.
+     */
+    @Bean
+    public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http,
+                                                         ServerSecurityContextRepository securityContextRepository) {
+        http
+                .csrf(ServerHttpSecurity.CsrfSpec::disable)
+                .httpBasic(ServerHttpSecurity.HttpBasicSpec::disable)
+                .formLogin(ServerHttpSecurity.FormLoginSpec::disable)
+                .securityContextRepository(securityContextRepository)
+
+                .authorizeExchange(auth -> auth
+                        // Allow anyone to access the /api/auth/** endpoints (register, login)
+                        .pathMatchers("/api/auth/**").permitAll()
+
+                        // All other /api/** requests must be authenticated
+                        .pathMatchers("/api/**").authenticated()
+
+                        // Health checks need no login; the metrics tell too much about the store
+                        .pathMatchers("/actuator/health").permitAll()
+                        .pathMatchers("/actuator/prometheus").authenticated()
+
+                        // Deny any other request that doesn't match
+                        .anyExchange().denyAll()
+                )
+
+                // Send 401 instead of a login page or a Basic challenge.
+                .exceptionHandling(customizer -> customizer
+                        .authenticationEntryPoint(new HttpStatusServerEntryPoint(UNAUTHORIZED))
+                );
+
+        return http.build();
+    }
+}
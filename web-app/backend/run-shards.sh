@@ -0,0 +1,70 @@
+#!/usr/bin/env bash
+# Runs NODES (3) backend nodes on ports BASE_PORT+1.. (8081..) as one sharded inventory,
+# with a shared signing secret so a login on any node is accepted by all of them, a
+# shared node secret so they can sign the requests they forward to each other, and
+# without rate limits, since the check below writes as fast as one client can.
+# Logs go to target/shards/node-<port>.log. Build the jar first: mvn package -DskipTests
+#
+# With CHECK=1 it instead writes ITEMS (300) items through the first node, checks that
+# every node lists all of them, prints how many each node holds, and stops the nodes.
+# RUN overrides the command that starts one node (default: java -jar <exec jar>).
+set -euo pipefail
+cd "$(dirname "$0")"
+
+nodes=${NODES:-3}
+base=${BASE_PORT:-8080}
+run=${RUN:-java -jar target/queueinv-0.0.1-SNAPSHOT-exec.jar}
+secret=${TOKEN_SECRET:-local-shard-harness-secret-0123456789}
+shard_secret=${SHARD_SECRET:-local-shard-harness-node-secret-0123456}
+mkdir -p target/shards
+
+urls=()
+for i in $(seq 1 "$nodes"); do urls+=("http://localhost:$((base + i))"); done
+list=$(IFS=,; echo "${urls[*]}")
+
+pids=()
+trap 'kill "${pids[@]}" 2>/dev/null || true' EXIT
+for i in $(seq 1 "$nodes"); do
+    port=$((base + i))
+    $run --server.port=$port \
+        --queueinv.shard.nodes="$list" --queueinv.shard.self="http://localhost:$port" \
+        --queueinv.shard.secret="$shard_secret" \
+        --queueinv.auth.mode=TOKEN --queueinv.auth.token-secret="$secret" \
+        --queueinv.ratelimit.enabled=false \
+        > "target/shards/node-$port.log" 2>&1 &
+    pids+=($!)
+done
+for url in "${urls[@]}"; do
+    for _ in $(seq 90); do
+        curl -sf "$url/actuator/health" > /dev/null && break
+        sleep 1
+    done
+    curl -sf "$url/actuator/health" > /dev/null || { echo "$url did not start" >&2; exit 1; }
+done
+echo "nodes: $list"
+
+if [ "${CHECK:-0}" != 1 ]; then
+    echo "Ctrl-C stops them"
+    wait
+    exit 0
+fi
+
+token=$(curl -s -D - -o /dev/null -H 'Content-Type: application/json' \
+    -d '{"username":"admin","password":"Password123!"}' "${urls[0]}/api/auth/login" \
+    | sed -n 's/^[Ss]et-[Cc]ookie: QUEUEINV_TOKEN=\([^;]*\).*/\1/p')
+auth=(-H "Authorization: Bearer $token")
+items=${ITEMS:-300}
+for n in $(seq 1 "$items"); do
+    curl -sf "${auth[@]}" -H 'Content-Type: application/json' \
+        -d "{\"name\":\"shard-item-$n\",\"amount\":$n}" "${urls[0]}/api/inventory/addOrIncrement"
+done
+
+status=0
+for url in "${urls[@]}"; do
+    all=$(curl -sf "${auth[@]}" "$url/api/inventory" | grep -o '"name"' | wc -l)
+    own=$(curl -sf "${auth[@]}" "$url/api/inventory/stream" | grep -o '"name"' | wc -l)
+    echo "$url lists $all items and holds $own"
+    [ "$all" -eq "$items" ] || status=1
+done
+[ $status -eq 0 ] && echo "OK" || echo "FAILED: not every node lists all $items items"
+exit $status
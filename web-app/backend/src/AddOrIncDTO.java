@@ -0,0 +1,6 @@
+package com.example.queueinv;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+
+public record AddOrIncDTO(@NotBlank String name, @Min(1) int amount) {}
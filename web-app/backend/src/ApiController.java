@@ -1,67 +1,336 @@
 package com.example.queueinv;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
 import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @RestController
 @RequestMapping("/api")
 public class ApiController {
 
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    private static final long DEQUEUE_WAIT_SLACK_MS = 10_000;
+
     private final StoreService svc;
+    private final ShardRouter shards; // null unless the inventory is sharded
+    private final ObjectMapper mapper;
+    private final ObjectWriter ndjsonWriter;
+    private final EncodedListing inventoryJson;
+    private final EncodedListing queueJson;
+    // versions restart from zero with the process, so ETags carry which process issued them
+    private final String etagPrefix = Long.toString(System.currentTimeMillis(), 36) + "-";
 
-    public ApiController(StoreService svc) {
+    public ApiController(StoreService svc, Optional<ShardRouter> shards, ObjectMapper mapper) {
         this.svc = svc;
+        this.shards = shards.orElse(null);
+        this.mapper = mapper;
+        // flushing is left to the servlet buffer instead of once per row
+        this.ndjsonWriter = mapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.inventoryJson = new EncodedListing(svc::inventoryVersion, svc::listItems, mapper);
+        this.queueJson = new EncodedListing(svc::queueVersion, svc::listQueue, mapper);
+    }
+
+    /* Change feed */
+    /**
+     * Server-sent events for every inventory and queue change: {@code item} (ItemDTO),
+     * {@code itemRemoved}, {@code enqueued}, {@code dequeued} and {@code cleared}.
+     * A {@code reset} event means the client missed changes and should reload the lists;
+     * it is also the first event of a new connection. Browsers reconnect with
+     * Last-Event-ID automatically and resume without a reset when possible. Written
+     * without blocking; a client that stops reading is disconnected.
+     */
+    @GetMapping(path = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public void events(@RequestHeader(name = "Last-Event-ID", required = false) String lastEventId,
+                       HttpServletRequest http, HttpServletResponse response) throws IOException {
+        ServletEventSink sink = ServletEventSink.open(http, response, mapper);
+        ChangeFeed.Subscription sub = svc.changes().subscribe(lastEventId, sink);
+        sink.onClose(sub::cancel);
     }
 
     /* Inventory */
+    /**
+     * Lists the inventory sorted by name. Without {@code limit} the whole catalog is
+     * returned; with it, one page is returned and the cursor for the next page (if any)
+     * is sent in the X-Next-Cursor header.
+     * Responses carry an ETag; a matching If-None-Match gets 304 without the list being built.
+     * The whole catalog is sent from JSON encoded once per change (gzipped if accepted,
+     * under its own ETag).
+     * When sharded, every node's part is fetched and merged, and there is no ETag.
+     */
     @GetMapping("/inventory")
-    public List<ItemDTO> listInventory() { return svc.listItems(); }
+    public ResponseEntity<?> listInventory(@RequestParam(required = false) Integer limit,
+                                           @RequestParam(required = false) String cursor,
+                                           WebRequest request, HttpServletRequest http) {
+        boolean gather = routes(http);
+        String etag = variant(etagPrefix + svc.inventoryVersion(), limit == null, http);
+        if (!gather && request.checkNotModified(etag)) return null;
+        if (limit == null) {
+            return gather ? ResponseEntity.ok(shards.gather(http, svc.listItems())) : encoded(inventoryJson, http);
+        }
+        ItemPageDTO page = svc.listItems(cursor, limit);
+        if (gather) page = shards.gatherPage(http, page, limit);
+        ResponseEntity.BodyBuilder res = ResponseEntity.ok();
+        if (page.nextCursor() != null) res.header(NEXT_CURSOR_HEADER, page.nextCursor());
+        return res.body(page.items());
+    }
+
+    /**
+     * Streams the sorted inventory as newline-delimited JSON in constant memory.
+     * When sharded, only this node's part is streamed.
+     */
+    @GetMapping("/inventory/stream")
+    public ResponseEntity<StreamingResponseBody> streamInventory() {
+        return ResponseEntity.ok().contentType(NDJSON).body(out -> writeNdjson(out, svc.iterateItems()));
+    }
 
     @GetMapping("/inventory/search")
-    public List<ItemDTO> searchInventory(@RequestParam String q) { return svc.searchItems(q); }
+    public List<ItemDTO> searchInventory(@RequestParam String q, HttpServletRequest http) {
+        List<ItemDTO> hits = svc.searchItems(q);
+        return routes(http) ? shards.gather(http, hits) : hits;
+    }
 
     @PostMapping("/inventory/addOrIncrement")
-    public ResponseEntity<Void> addOrIncrement(@Valid @RequestBody AddOrIncDTO body) {
+    public ResponseEntity<?> addOrIncrement(@Valid @RequestBody AddOrIncDTO body, HttpServletRequest http) {
+        String owner = ownerElsewhere(body.name(), http);
+        if (owner != null) return shards.forward(owner, http, body);
         svc.addOrIncrement(body.name(), body.amount());
         return ResponseEntity.noContent().build();
     }
 
     @PutMapping("/inventory/setQuantity")
-    public ResponseEntity<Void> setQuantity(@Valid @RequestBody SetQtyDTO body) {
+    public ResponseEntity<?> setQuantity(@Valid @RequestBody SetQtyDTO body, HttpServletRequest http) {
+        String owner = ownerElsewhere(body.name(), http);
+        if (owner != null) return shards.forward(owner, http, body);
         svc.setQuantity(body.name(), body.qty());
         return ResponseEntity.noContent().build();
     }
 
+    /**
+     * Applies many inventory mutations in one request. Returns 200 with per-operation
+     * results, or 422 when an atomic batch was rejected and nothing was applied.
+     * When sharded, each node applies its own items' operations; an atomic batch must
+     * keep to one node's items.
+     */
+    @PostMapping("/inventory/batch")
+    public ResponseEntity<?> batch(@Valid @RequestBody BatchRequestDTO body, HttpServletRequest http) {
+        if (routes(http)) return shards.applyBatch(body, http, ops -> svc.applyBatch(ops, body.atomic()));
+        return batchResponse(svc.applyBatch(body.ops(), body.atomic()));
+    }
+
+    // 200 with the results, or 422 when an atomic batch was rejected.
+    static ResponseEntity<BatchResultDTO> batchResponse(BatchResultDTO result) {
+        return result.applied()
+                ? ResponseEntity.ok(result)
+                : ResponseEntity.unprocessableEntity().body(result);
+    }
+
     @DeleteMapping("/inventory/{name}")
-    public ResponseEntity<Void> deleteItem(@PathVariable String name) {
+    public ResponseEntity<?> deleteItem(@PathVariable String name, HttpServletRequest http) {
+        String owner = ownerElsewhere(name, http);
+        if (owner != null) return shards.forward(owner, http, null);
         boolean ok = svc.removeItem(name);
         return ok ? ResponseEntity.noContent().build() : ResponseEntity.notFound().build();
     }
 
     /* Queue */
+    // When sharded, the whole queue lives on one node and the others forward to it.
+
+    /**
+     * The queue in serving order, or just one lane with {@code lane}, with an ETag; a
+     * matching If-None-Match gets 304 without the list being built. The whole queue is
+     * sent from JSON encoded once per change (gzipped if accepted, under its own ETag).
+     */
     @GetMapping("/queue")
-    public List<CustomerDTO> listQueue() { return svc.listQueue(); }
+    public ResponseEntity<?> listQueue(@RequestParam(required = false) Priority lane,
+                                       WebRequest request, HttpServletRequest http) {
+        String home = queueElsewhere(http);
+        if (home != null) return shards.forward(home, http, null);
+        if (request.checkNotModified(variant(etagPrefix + svc.queueVersion(), lane == null, http))) return null;
+        return lane == null ? encoded(queueJson, http) : ResponseEntity.ok(svc.listQueue(lane));
+    }
+
+    /** Streams the queue in order as newline-delimited JSON in constant memory. */
+    @GetMapping("/queue/stream")
+    public ResponseEntity<?> streamQueue(HttpServletRequest http) {
+        String home = queueElsewhere(http);
+        if (home != null) return shards.forward(home, http, null);
+        return ResponseEntity.ok().contentType(NDJSON).body((StreamingResponseBody) out -> writeNdjson(out, svc.iterateQueue()));
+    }
 
     @GetMapping("/queue/search")
-    public List<CustomerDTO> searchQueue(@RequestParam String q) { return svc.searchQueue(q); }
+    public ResponseEntity<?> searchQueue(@RequestParam String q, HttpServletRequest http) {
+        String home = queueElsewhere(http);
+        if (home != null) return shards.forward(home, http, null);
+        return ResponseEntity.ok(svc.searchQueue(q));
+    }
+
+    @GetMapping("/queue/position")
+    public ResponseEntity<?> queuePosition(@RequestParam String name, HttpServletRequest http) {
+        String home = queueElsewhere(http);
+        if (home != null) return shards.forward(home, http, null);
+        OptionalLong pos = svc.queuePosition(name);
+        return pos.isPresent()
+                ? ResponseEntity.ok(new QueuePositionDTO(name.trim(), pos.getAsLong()))
+                : ResponseEntity.notFound().build();
+    }
 
+    /** Adds a customer to the lane of its {@code priority}; the query parameter overrides the body's. */
     @PostMapping("/queue/enqueue")
-    public ResponseEntity<Void> enqueue(@Valid @RequestBody CustomerDTO body) {
+    public ResponseEntity<?> enqueue(@Valid @RequestBody CustomerDTO body,
+                                     @RequestParam(required = false) Priority priority,
+                                     HttpServletRequest http) {
+        if (priority != null) body = new CustomerDTO(body.name(), body.note(), priority);
+        String home = queueElsewhere(http);
+        if (home != null) return shards.forward(home, http, body);
         svc.enqueue(body);
         return ResponseEntity.noContent().build();
     }
 
+    /** Serves the customer whose turn it is, or the head of one lane with {@code lane} (e.g. a VIP desk). */
     @PostMapping("/queue/dequeue")
-    public ResponseEntity<CustomerDTO> dequeue() {
-        return ResponseEntity.of(svc.dequeue());
+    public ResponseEntity<?> dequeue(@RequestParam(required = false) Priority lane, HttpServletRequest http) {
+        String home = queueElsewhere(http);
+        if (home != null) return shards.forward(home, http, null);
+        return ResponseEntity.of(svc.dequeue(lane));
+    }
+
+    /** Serves up to {@code max} customers at once, e.g. one per free desk; an empty list when nobody waits. */
+    @PostMapping(path = "/queue/dequeue", params = "max")
+    public ResponseEntity<?> dequeueMany(@RequestParam(required = false) Priority lane, @RequestParam int max,
+                                         @RequestParam(required = false) Long waitMs, HttpServletRequest http) {
+        if (waitMs != null) throw new InvalidRequestException("max cannot be combined with waitMs");
+        String home = queueElsewhere(http);
+        if (home != null) return shards.forward(home, http, null);
+        return ResponseEntity.ok(svc.dequeue(lane, max));
+    }
+
+    /**
+     * Long-poll dequeue: when nobody is waiting, the request is parked (no thread held)
+     * until a customer arrives, answering 404 only after {@code waitMs}.
+     */
+    @PostMapping(path = "/queue/dequeue", params = {"waitMs", "!max"})
+    public DeferredResult<ResponseEntity<?>> dequeue(@RequestParam(required = false) Priority lane,
+                                                     @RequestParam long waitMs, HttpServletRequest http) {
+        // the container's own timeout is only a backstop; the store answers at waitMs
+        DeferredResult<ResponseEntity<?>> result = new DeferredResult<>(waitMs + DEQUEUE_WAIT_SLACK_MS);
+        String home = queueElsewhere(http);
+        // cancel the call itself, not a stage derived from it, so the wait is withdrawn
+        CompletableFuture<?> call;
+        CompletableFuture<? extends ResponseEntity<?>> answer;
+        if (home != null) {
+            answer = shards.forwardAsync(home, http, null, Duration.ofMillis(waitMs));
+            call = answer;
+        } else {
+            CompletableFuture<Optional<CustomerDTO>> waiting = svc.dequeue(lane, waitMs);
+            answer = waiting.thenApply(ResponseEntity::of);
+            call = waiting;
+        }
+        answer.whenComplete((res, e) -> {
+            if (e == null) result.setResult(res);
+            else result.setErrorResult(e instanceof CompletionException ? e.getCause() : e);
+        });
+        result.onTimeout(() -> call.cancel(false));
+        result.onError(e -> call.cancel(false));
+        return result;
     }
 
     @DeleteMapping("/queue")
-    public ResponseEntity<Void> clearQueue() {
+    public ResponseEntity<?> clearQueue(HttpServletRequest http) {
+        String home = queueElsewhere(http);
+        if (home != null) return shards.forward(home, http, null);
         svc.clearQueue();
         return ResponseEntity.noContent().build();
     }
+
+    // The ETag of what encoded() sends: a gzip body is a different representation of
+    // the same version, so it gets its own tag. Whether gzip is used depends only on
+    // the version's body, so each tag still stands for one set of bytes.
+    private static String variant(String etag, boolean encoded, HttpServletRequest http) {
+        return encoded && acceptsGzip(http) ? etag + "-gz" : etag;
+    }
+
+    // A cached listing as is, gzipped for clients that accept it.
+    private static ResponseEntity<byte[]> encoded(EncodedListing listing, HttpServletRequest http) {
+        EncodedListing.Body body = listing.get();
+        ResponseEntity.BodyBuilder res = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        byte[] gzip = acceptsGzip(http) ? body.gzip() : null;
+        if (gzip == null) return res.body(body.json);
+        return res.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(gzip);
+    }
+
+    // Whether Accept-Encoding lists gzip without ruling it out by q=0.
+    private static boolean acceptsGzip(HttpServletRequest http) {
+        String accept = http.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        if (accept == null) return false;
+        for (String coding : accept.split(",")) {
+            String[] parts = coding.split(";");
+            if (!parts[0].trim().equalsIgnoreCase("gzip")) continue;
+            for (int i = 1; i < parts.length; i++) {
+                String p = parts[i].trim();
+                if (p.startsWith("q=") && p.substring(2).matches("0(\\.0*)?")) return false;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /* Sharding */
+    // Whether this node routes the request: sharded, and not already forwarded by another node.
+    private boolean routes(HttpServletRequest http) {
+        return shards != null && !shards.isForwarded(http);
+    }
+
+    // The node that holds this item when it is not this one; null to handle it here.
+    private String ownerElsewhere(String name, HttpServletRequest http) {
+        if (!routes(http)) return null;
+        String owner = shards.ownerOf(InventoryEngine.keyOf(name));
+        return shards.isSelf(owner) ? null : owner;
+    }
+
+    // The node that holds the queue when it is not this one; null to handle it here.
+    private String queueElsewhere(HttpServletRequest http) {
+        if (!routes(http)) return null;
+        String home = shards.queueHome();
+        return shards.isSelf(home) ? null : home;
+    }
+
+    // One JSON document per line. The first line is flushed straight away so the client
+    // sees data before the rest of the catalog has been walked.
+    private void writeNdjson(OutputStream out, Iterable<?> rows) throws IOException {
+        try (JsonGenerator gen = mapper.getFactory().createGenerator(out)) {
+            gen.setRootValueSeparator(null);
+            boolean first = true;
+            for (Object row : rows) {
+                ndjsonWriter.writeValue(gen, row);
+                gen.writeRaw('\n');
+                if (first) {
+                    gen.flush();
+                    first = false;
+                }
+            }
+        }
+    }
 }
@@ -6,10 +6,15 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import java.util.Map;
+
 @SpringBootApplication
 public class Application {
     public static void main(String[] args) {
-        SpringApplication.run(Application.class, args);
+        SpringApplication app = new SpringApplication(Application.class);
+        // only health and the Prometheus scrape are exposed unless overridden
+        app.setDefaultProperties(Map.of("management.endpoints.web.exposure.include", "health,prometheus"));
+        app.run(args);
     }
 
     @Bean
@@ -20,7 +25,8 @@ public class Application {
                 registry.addMapping("/api/**")
                         .allowedOrigins("http://localhost:5173", "http://localhost:3000")
                         .allowedMethods("GET","POST","PUT","DELETE","OPTIONS")
-                        .allowedHeaders("*");
+                        .allowedHeaders("*")
+                        .exposedHeaders(ApiController.NEXT_CURSOR_HEADER, "ETag");
             }
         };
     }
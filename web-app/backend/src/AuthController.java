@@ -1,13 +1,17 @@
 package com.example.queueinv;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.InternalAuthenticationServiceException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.web.context.SecurityContextRepository;
@@ -26,13 +30,18 @@ public class AuthController {
     private final AuthService authService;
     private final AuthenticationManager authenticationManager;
     private final SecurityContextRepository securityContextRepository;
+    private final Counter loginSucceeded;
+    private final Counter loginFailed;
 
     public AuthController(AuthService authService,
                           AuthenticationManager authenticationManager,
-                          SecurityContextRepository securityContextRepository) {
+                          SecurityContextRepository securityContextRepository,
+                          MeterRegistry registry) {
         this.authService = authService;
         this.authenticationManager = authenticationManager;
         this.securityContextRepository = securityContextRepository;
+        this.loginSucceeded = registry.counter("queueinv.auth.logins", "result", "success");
+        this.loginFailed = registry.counter("queueinv.auth.logins", "result", "failure");
     }
 
     /**
@@ -62,7 +71,19 @@ public class AuthController {
 
         // 2. Authenticate the user. This will use AuthService.loadUserByUsername()
         // and check the password using the BCrypt encoder.
-        Authentication authentication = authenticationManager.authenticate(token);
+        Authentication authentication;
+        try {
+            authentication = authenticationManager.authenticate(token);
+        } catch (InternalAuthenticationServiceException e) {
+            // for an unknown user, a saturated hashing pool arrives wrapped; it is a 503, not a failed login
+            if (e.getCause() instanceof PasswordHashingBusyException busy) throw busy;
+            loginFailed.increment();
+            throw e;
+        } catch (AuthenticationException e) {
+            loginFailed.increment();
+            throw e;
+        }
+        loginSucceeded.increment();
 
         // 3. Manually create a new security context and set the authentication
         SecurityContext context = SecurityContextHolder.createEmptyContext();
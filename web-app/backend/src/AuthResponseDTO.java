@@ -0,0 +1,9 @@
+package com.example.queueinv;
+
+/**
+ * DUP for security responses (e.g., login success)
+ */
+record AuthResponseDTO(
+        String username,
+        String message
+) {}
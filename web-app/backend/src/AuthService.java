@@ -1,7 +1,10 @@
 package com.example.queueinv;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -13,17 +16,22 @@ import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Handles user storage and registration logic.
- * Implements UserDetailsService to plug into Spring Security.
+ * Implements UserDetailsService to plug into Spring Security, and
+ * UserDetailsPasswordService so hashes are upgraded when the BCrypt cost changes.
  */
 @Service
-public class AuthService implements UserDetailsService {
+public class AuthService implements UserDetailsService, UserDetailsPasswordService {
 
     // In-memory "database" for users. A real app would use a SQL/NoSQL database.
     private final Map<String, UserDetails> userStore = new ConcurrentHashMap<>();
     private final PasswordEncoder passwordEncoder;
+    private final Counter registered;
+    private final Counter usernameTaken;
 
-    public AuthService(PasswordEncoder passwordEncoder) {
+    public AuthService(PasswordEncoder passwordEncoder, MeterRegistry registry) {
         this.passwordEncoder = passwordEncoder;
+        this.registered = registry.counter("queueinv.auth.registrations", "result", "success");
+        this.usernameTaken = registry.counter("queueinv.auth.registrations", "result", "taken");
 
         // For testing: create a default admin user
         // In a real app, you would remove this.
@@ -44,7 +52,20 @@ public class AuthService implements UserDetailsService {
         if (user == null) {
             throw new UsernameNotFoundException("User not found: " + username);
         }
-        return user;
+        // Return a copy: after a successful login Spring Security erases the password
+        // of the returned object, which would otherwise wipe the stored hash.
+        return User.withUserDetails(user).build();
+    }
+
+    /**
+     * Called by Spring Security after a successful login when the stored hash was made
+     * with a different cost; stores the rehashed password.
+     */
+    @Override
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        UserDetails updated = User.withUserDetails(user).password(newPassword).build();
+        userStore.put(user.getUsername().toLowerCase(), updated);
+        return updated;
     }
 
     /**
@@ -56,7 +77,8 @@ public class AuthService implements UserDetailsService {
 
         // 1. Check for unique username
         if (userStore.containsKey(username.toLowerCase())) {
-            throw new IllegalStateException("Username already taken. Please choose another.");
+            usernameTaken.increment();
+            throw new UsernameTakenException();
         }
 
         // 2. Hash the password
@@ -65,5 +87,6 @@ public class AuthService implements UserDetailsService {
         // 3. Create and save the new user
         UserDetails newUser = new User(username, hashedPassword, Collections.emptyList());
         userStore.put(username.toLowerCase(), newUser);
+        registered.increment();
     }
 }
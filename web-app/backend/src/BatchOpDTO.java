@@ -0,0 +1,7 @@
+package com.example.queueinv;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+
+/** One inventory mutation: INCREMENT uses {@code amount}, SET uses {@code qty}, DELETE uses neither. */
+public record BatchOpDTO(@NotNull BatchOpType op, @NotBlank String name, Integer amount, Integer qty) {}
@@ -0,0 +1,4 @@
+package com.example.queueinv;
+
+/** Outcome of one operation; {@code qty} is the resulting quantity (null for deletes and failures). */
+public record BatchOpResultDTO(int index, boolean ok, Integer qty, String error) {}
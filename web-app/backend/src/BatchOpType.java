@@ -0,0 +1,3 @@
+package com.example.queueinv;
+
+public enum BatchOpType { INCREMENT, SET, DELETE }
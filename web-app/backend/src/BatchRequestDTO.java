@@ -0,0 +1,12 @@
+package com.example.queueinv;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public record BatchRequestDTO(
+        @NotEmpty @Size(max = StoreService.MAX_BATCH_SIZE) List<@Valid BatchOpDTO> ops,
+        boolean atomic
+) {}
@@ -0,0 +1,5 @@
+package com.example.queueinv;
+
+import java.util.List;
+
+public record BatchResultDTO(boolean applied, List<BatchOpResultDTO> results) {}
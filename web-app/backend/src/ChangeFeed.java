@@ -0,0 +1,282 @@
+package com.example.queueinv;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Fans StoreService mutations out to live subscribers (the SSE endpoint).
+ * Events live in a fixed-size lock-free ring. A mutation only claims its event's id
+ * while the store still holds the lock that orders it (one atomic increment); the
+ * store publishes the event with {@link #publish()} once the change is visible and
+ * logged, outside its locks. Subscribers stop at an id that is claimed but not yet
+ * published, so they see events in the order the changes happened.
+ * Each subscriber is just a cursor into the ring, which bounds how far it may fall
+ * behind: one that is more than a ring's worth of events behind gets a single
+ * {@code reset} event and must reload instead.
+ * When a subscriber is sent a batch, only the newest change to each item is kept,
+ * so a slow client receives the latest quantity rather than every step in between.
+ * Event ids carry a per-process prefix, so a client reconnecting with Last-Event-ID
+ * resumes where it stopped if the events are still in the ring, and is reset otherwise.
+ */
+final class ChangeFeed implements StoreListener {
+
+    static final String RESET = "reset";
+
+    private static final int CAPACITY = 8192;
+    private static final long HEARTBEAT_MILLIS = 15_000;
+
+    /**
+     * Where a subscriber's events go; {@code data} is serialized as JSON. Neither method
+     * may block: a sink that cannot take more because its client is not reading throws
+     * IOException, which drops the subscriber (browsers then reconnect and resume).
+     */
+    interface Sink {
+        void send(String id, String type, Object data) throws IOException;
+        void heartbeat() throws IOException;
+    }
+
+    /** Handle returned by {@link #subscribe}; cancel it when the client goes away. */
+    interface Subscription {
+        void cancel();
+    }
+
+    private record Event(long id, String type, Object data, String coalesceKey) {}
+
+    private final class Subscriber implements Subscription {
+        final Sink sink;
+        final AtomicBoolean busy = new AtomicBoolean();
+        volatile long cursor; // id of the next event to send
+        volatile boolean reset;
+        volatile boolean cancelled;
+
+        Subscriber(Sink sink) {
+            this.sink = sink;
+        }
+
+        @Override public void cancel() {
+            cancelled = true;
+            subscribers.remove(this);
+        }
+    }
+
+    private final String prefix = Long.toString(System.currentTimeMillis(), 36) + "-";
+    private final AtomicReferenceArray<Event> ring = new AtomicReferenceArray<>(CAPACITY);
+    private final AtomicLong head = new AtomicLong(1); // id the next event claims
+    // events this thread has claimed ids for and not published yet
+    private final ThreadLocal<List<Event>> claimed = ThreadLocal.withInitial(ArrayList::new);
+    private volatile boolean closed;
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final ExecutorService senders = Executors.newFixedThreadPool(4, daemon("change-feed-sender"));
+    private final Thread dispatcher = daemon("change-feed").newThread(this::dispatchLoop);
+
+    ChangeFeed() {
+        dispatcher.start();
+    }
+
+    /* Publishing */
+    @Override public void itemSaved(String name, int qty) {
+        claim("item", new ItemDTO(name, qty), InventoryEngine.keyOf(name));
+    }
+
+    @Override public void itemRemoved(String key) {
+        claim("itemRemoved", new ItemRemovedDTO(key), key);
+    }
+
+    @Override public void customerEnqueued(long seq, CustomerDTO c) {
+        claim("enqueued", new CustomerEnqueuedDTO(seq, c.name(), c.note(), c.priority()), null);
+    }
+
+    @Override public void customerDequeued(long seq) {
+        claim("dequeued", new CustomerDequeuedDTO(seq), null);
+    }
+
+    @Override public void queueCleared(long bound) {
+        claim("cleared", new QueueClearedDTO(bound), null);
+    }
+
+    private void claim(String type, Object data, String coalesceKey) {
+        claimed.get().add(new Event(head.getAndIncrement(), type, data, coalesceKey));
+    }
+
+    /**
+     * Publishes the events the calling thread has claimed so far. The store calls this
+     * after every mutation, once it is visible, and must not leave one unpublished:
+     * subscribers wait for it.
+     */
+    void publish() {
+        List<Event> mine = claimed.get();
+        if (mine.isEmpty()) return;
+        // a slot already holding a newer event means this one was overwritten unseen;
+        // subscribers that still wanted it notice and are reset
+        for (Event e : mine) ring.accumulateAndGet(slot(e.id()), e, (cur, next) -> cur != null && cur.id() > next.id() ? cur : next);
+        mine.clear();
+        LockSupport.unpark(dispatcher);
+    }
+
+    private static int slot(long id) {
+        return (int) (id % CAPACITY);
+    }
+
+    /* Subscribing */
+    /**
+     * Starts sending events to {@code sink}. With a {@code lastEventId} that is still in
+     * the ring, delivery resumes right after it; otherwise the first event is a reset.
+     */
+    Subscription subscribe(String lastEventId, Sink sink) {
+        Subscriber s = new Subscriber(sink);
+        long h = head.get();
+        long last = parseId(lastEventId);
+        if (last >= 0 && last < h && last + 1 >= h - CAPACITY) {
+            s.cursor = last + 1;
+        } else {
+            s.cursor = h;
+            s.reset = true;
+        }
+        subscribers.add(s);
+        schedule(s);
+        return s;
+    }
+
+    /** Stops the dispatcher; subscribers get nothing more. */
+    void close() {
+        closed = true;
+        LockSupport.unpark(dispatcher);
+        senders.shutdownNow();
+        subscribers.clear();
+    }
+
+    private long parseId(String id) {
+        if (id == null || !id.startsWith(prefix)) return -1;
+        try {
+            return Long.parseLong(id.substring(prefix.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /* Delivery */
+    // Wakes up whenever something is published and hands lagging subscribers to a sender.
+    private void dispatchLoop() {
+        long seen = head.get();
+        while (!closed) {
+            LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(HEARTBEAT_MILLIS));
+            if (closed) return;
+            long h = head.get();
+            boolean idle = h == seen;
+            seen = h;
+            for (Subscriber s : subscribers) {
+                if (idle) {
+                    try {
+                        senders.execute(() -> heartbeat(s));
+                    } catch (RejectedExecutionException e) {
+                        return; // closed
+                    }
+                } else if (pending(s)) {
+                    schedule(s);
+                }
+            }
+        }
+    }
+
+    // whether the subscriber has something to be sent: its next event, or a reset
+    private boolean pending(Subscriber s) {
+        Event e = ring.get(slot(s.cursor));
+        return s.reset || (e != null && e.id() >= s.cursor);
+    }
+
+    private void schedule(Subscriber s) {
+        if (!s.busy.compareAndSet(false, true)) return;
+        try {
+            senders.execute(() -> drain(s));
+        } catch (RejectedExecutionException e) {
+            s.busy.set(false); // closed
+        }
+    }
+
+    // Sends everything the subscriber has not seen yet and that has been published. The
+    // busy flag keeps it to one sender at a time, so its events go out in order.
+    private void drain(Subscriber s) {
+        try {
+            for (;;) {
+                if (s.cancelled) return;
+                if (head.get() - s.cursor > CAPACITY) lagged(s);
+                List<Event> batch = new ArrayList<>();
+                for (long id = s.cursor; ; id++) {
+                    Event e = ring.get(slot(id));
+                    if (e == null || e.id() < id) break; // not published yet
+                    if (e.id() > id) { // overwritten before it was sent
+                        lagged(s);
+                        batch.clear();
+                        break;
+                    }
+                    batch.add(e);
+                }
+                if (s.reset) {
+                    s.reset = false;
+                    s.sink.send(prefix + (s.cursor - 1), RESET, Map.of()); // EventSource drops events without data
+                }
+                if (batch.isEmpty()) break;
+                send(s, batch);
+            }
+        } catch (IOException | RuntimeException e) {
+            s.cancel();
+        } finally {
+            release(s);
+        }
+    }
+
+    private void lagged(Subscriber s) {
+        s.cursor = head.get();
+        s.reset = true;
+    }
+
+    // Events published while the subscriber was busy did not schedule it, so check again.
+    private void release(Subscriber s) {
+        s.busy.set(false);
+        if (!s.cancelled && pending(s)) schedule(s);
+    }
+
+    private void send(Subscriber s, List<Event> batch) throws IOException {
+        Map<String, Long> newest = new HashMap<>();
+        for (Event e : batch) {
+            if (e.coalesceKey() != null) newest.put(e.coalesceKey(), e.id());
+        }
+        for (Event e : batch) {
+            if (e.coalesceKey() != null && newest.get(e.coalesceKey()) != e.id()) continue; // superseded
+            s.sink.send(prefix + e.id(), e.type(), e.data());
+            s.cursor = e.id() + 1;
+        }
+    }
+
+    private void heartbeat(Subscriber s) {
+        if (!s.busy.compareAndSet(false, true)) return; // already sending real events
+        try {
+            s.sink.heartbeat();
+        } catch (IOException | RuntimeException e) {
+            s.cancel();
+        } finally {
+            release(s);
+        }
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return r -> {
+            Thread t = new Thread(r, name);
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.queueinv;
+
+import jakarta.validation.constraints.NotBlank;
+
+/** A queued customer; {@code priority} defaults to WALK_IN when left out. */
+public record CustomerDTO(@NotBlank String name, String note, Priority priority) {
+    public CustomerDTO(String name, String note) { this(name, note, Priority.WALK_IN); }
+}
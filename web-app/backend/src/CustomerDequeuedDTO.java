@@ -0,0 +1,4 @@
+package com.example.queueinv;
+
+/** Change feed payload for a customer served or removed. */
+public record CustomerDequeuedDTO(long seq) {}
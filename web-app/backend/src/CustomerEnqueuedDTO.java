@@ -0,0 +1,4 @@
+package com.example.queueinv;
+
+/** Change feed payload for a customer joining the queue. */
+public record CustomerEnqueuedDTO(long seq, String name, String note, Priority priority) {}
@@ -0,0 +1,87 @@
+package com.example.queueinv;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A listing kept as ready-to-send JSON, rebuilt only when its version has moved on,
+ * so repeated reads of an unchanged list cost a byte copy instead of a sort and a
+ * serialization each. The version is read before the list, so a cached body is never
+ * older than the version it is filed under. One caller rebuilds while the others
+ * wait for its result. The gzip form is made the first time a client asks for it.
+ */
+final class EncodedListing {
+
+    /** Bodies smaller than this are not worth compressing. */
+    static final int GZIP_MIN_BYTES = 2048;
+
+    static final class Body {
+        final long version;
+        final byte[] json;
+        private volatile byte[] gzip;
+
+        private Body(long version, byte[] json) {
+            this.version = version;
+            this.json = json;
+        }
+
+        /** The JSON gzip-compressed, or null if it is too small to bother. */
+        byte[] gzip() {
+            if (json.length < GZIP_MIN_BYTES) return null;
+            byte[] g = gzip;
+            if (g == null) gzip = g = compress(json); // a racing duplicate is harmless
+            return g;
+        }
+    }
+
+    private final LongSupplier version;
+    private final Supplier<?> list;
+    private final ObjectMapper mapper;
+    private volatile Body current;
+
+    EncodedListing(LongSupplier version, Supplier<?> list, ObjectMapper mapper) {
+        this.version = version;
+        this.list = list;
+        this.mapper = mapper;
+    }
+
+    /** The cached listing if it is still current, else null; never waits. */
+    Body fresh() {
+        Body b = current;
+        return b != null && b.version == version.getAsLong() ? b : null;
+    }
+
+    /** The listing as of now or later. */
+    Body get() {
+        Body b = fresh();
+        if (b != null) return b;
+        synchronized (this) {
+            long v = version.getAsLong();
+            b = current;
+            if (b != null && b.version == v) return b;
+            try {
+                b = new Body(v, mapper.writeValueAsBytes(list.get()));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            current = b;
+            return b;
+        }
+    }
+
+    private static byte[] compress(byte[] json) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length / 4);
+        try (GZIPOutputStream gz = new GZIPOutputStream(out, 8192)) {
+            gz.write(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+}
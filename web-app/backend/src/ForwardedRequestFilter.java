@@ -0,0 +1,94 @@
+package com.example.queueinv;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.SequenceInputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Checks the forwarding header of a request that claims to come from another shard
+ * node (see ShardRouter) and records the answer for {@link ShardRouter#isForwarded}.
+ * The signature covers the body, so the body is read here, up to
+ * {@value #MAX_BODY_BYTES} bytes, and handed on to be read again. A longer body is
+ * handed on unchecked, and the request is then treated as not forwarded.
+ */
+final class ForwardedRequestFilter extends OncePerRequestFilter {
+
+    static final int MAX_BODY_BYTES = 8 * 1024 * 1024;
+
+    private final ShardRouter shards;
+
+    ForwardedRequestFilter(ShardRouter shards) {
+        this.shards = shards;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (request.getHeader(ShardRouter.FORWARDED_HEADER) == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        InputStream in = request.getInputStream();
+        byte[] body = in.readNBytes(MAX_BODY_BYTES + 1);
+        if (body.length > MAX_BODY_BYTES) {
+            chain.doFilter(new ReadAgain(request, new SequenceInputStream(new ByteArrayInputStream(body), in)), response);
+            return;
+        }
+        if (shards.verifyForwarded(request, body)) request.setAttribute(ShardRouter.FORWARDED_ATTRIBUTE, Boolean.TRUE);
+        chain.doFilter(new ReadAgain(request, new ByteArrayInputStream(body)), response);
+    }
+
+    // The request with its body served from what was already read.
+    private static final class ReadAgain extends HttpServletRequestWrapper {
+        private final ServletInputStream body;
+
+        ReadAgain(HttpServletRequest request, InputStream body) {
+            super(request);
+            this.body = new ServletInputStream() {
+                private boolean finished;
+
+                @Override public int read() throws IOException {
+                    int b = body.read();
+                    finished = b < 0;
+                    return b;
+                }
+                @Override public int read(byte[] buf, int off, int len) throws IOException {
+                    int n = body.read(buf, off, len);
+                    finished = n < 0;
+                    return n;
+                }
+                @Override public boolean isFinished() { return finished; }
+                @Override public boolean isReady() { return true; }
+                @Override public void setReadListener(ReadListener listener) {
+                    throw new UnsupportedOperationException("Blocking reads only");
+                }
+            };
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            return body;
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String encoding = getCharacterEncoding();
+            Charset charset = encoding == null ? StandardCharsets.UTF_8 : Charset.forName(encoding);
+            return new BufferedReader(new InputStreamReader(body, charset));
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package com.example.queueinv;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.security.core.AuthenticationException;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -31,15 +33,66 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("errors", errors.toString()));
     }
 
+    /**
+     * Handles request bodies that are not valid JSON or do not fit the DTO
+     * (e.g. an unknown queue priority).
+     * Returns a 400 Bad Request.
+     */
+    @ExceptionHandler(HttpMessageNotReadableException.class)
+    public ResponseEntity<Map<String, String>> handleHttpMessageNotReadableException(HttpMessageNotReadableException ex) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("error", "Malformed request body"));
+    }
+
     /**
      * Handles "Username already taken" errors.
-     * Returns a 409 Conflict.
+     * Returns a 409 Conflict. Any other IllegalStateException is a fault of this server
+     * (a closed write-ahead log, a failed hash) and is left to the default 500.
      */
-    @ExceptionHandler(IllegalStateException.class)
-    public ResponseEntity<Map<String, String>> handleIllegalStateException(IllegalStateException ex) {
+    @ExceptionHandler(UsernameTakenException.class)
+    public ResponseEntity<Map<String, String>> handleUsernameTakenException(UsernameTakenException ex) {
         return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", ex.getMessage()));
     }
 
+    /**
+     * Handles bad request parameters (e.g. an out-of-range page size or a malformed cursor).
+     * Returns a 400 Bad Request.
+     */
+    @ExceptionHandler(InvalidRequestException.class)
+    public ResponseEntity<Map<String, String>> handleInvalidRequestException(InvalidRequestException ex) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("error", ex.getMessage()));
+    }
+
+    /**
+     * Handles logins and registrations turned away because password hashing is saturated.
+     * Returns a 503 Service Unavailable with a Retry-After hint.
+     */
+    @ExceptionHandler(PasswordHashingBusyException.class)
+    public ResponseEntity<Map<String, String>> handlePasswordHashingBusyException(PasswordHashingBusyException ex) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(Map.of("error", ex.getMessage()));
+    }
+
+    /**
+     * Handles customers turned away because the queue is at capacity.
+     * Returns a 429 Too Many Requests with a Retry-After hint.
+     */
+    @ExceptionHandler(QueueFullException.class)
+    public ResponseEntity<Map<String, String>> handleQueueFullException(QueueFullException ex) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, "5")
+                .body(Map.of("error", ex.getMessage()));
+    }
+
+    /**
+     * Handles requests that needed another shard node which could not answer.
+     * Returns a 502 Bad Gateway.
+     */
+    @ExceptionHandler(ShardUnavailableException.class)
+    public ResponseEntity<Map<String, String>> handleShardUnavailableException(ShardUnavailableException ex) {
+        return ResponseEntity.status(HttpStatus.BAD_GATEWAY).body(Map.of("error", ex.getMessage()));
+    }
+
     /**
      * Handles failed login attempts (bad username/password).
      * Returns a 401 Unauthorized.
@@ -0,0 +1,568 @@
+package com.example.queueinv;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Customer queue backing StoreService, with one FIFO lane per {@link Priority}.
+ * Every entry gets a sequence number on enqueue whose top bits name its lane, so a
+ * number alone says where a customer waits (the log and snapshots need nothing else),
+ * and numbers written before lanes existed all land in the walk-in lane.
+ * Each lane is a skip list keyed by that number, so dequeue is lock-free. Enqueue
+ * numbers and inserts its entry under the lane's lock, so a lane's entries appear in
+ * the order of their numbers and none is inserted behind one already served.
+ * Because customers only ever leave a lane from its head, the live numbers of a lane
+ * are contiguous and a customer's place in its lane is simply {@code seq - headSeq}.
+ * Lanes are served by weighted round robin: VIP, then appointment, then walk-in, each
+ * taking up to its weight in customers per turn; a lane with nobody waiting is skipped.
+ * Two secondary indexes sit on top: exact lowercase name to sequence numbers,
+ * and an n-gram index for substring search.
+ * An optional capacity bounds how many customers may wait; enqueue past it fails
+ * with {@link QueueFullException}. Replayed entries are not held to it.
+ * Mutations are reported to a {@link StoreListener}; an enqueue is reported before
+ * the entry becomes visible so it can never be logged after its own dequeue.
+ */
+final class IndexedCustomerQueue {
+
+    static final class Entry {
+        final long seq;
+        final CustomerDTO customer;
+        final String key; // lowercase name
+
+        Entry(long seq, CustomerDTO customer) {
+            this.seq = seq;
+            this.customer = customer;
+            this.key = customer.name().toLowerCase();
+        }
+    }
+
+    /** Lane weights used unless StoreService is configured otherwise: VIP 4, appointment 2, walk-in 1. */
+    static final int[] DEFAULT_WEIGHTS = {4, 2, 1};
+
+    private static final Priority[] PRIORITIES = Priority.values();
+    private static final int LANE_SHIFT = 56;
+
+    private static final class Lane {
+        final AtomicLong nextSeq;
+        final AtomicLong clearedBelow;
+        final AtomicInteger size = new AtomicInteger();
+        final ConcurrentSkipListMap<Long, Entry> entries = new ConcurrentSkipListMap<>();
+
+        Lane(long base) {
+            nextSeq = new AtomicLong(base);
+            clearedBelow = new AtomicLong(base);
+        }
+    }
+
+    private final Lane[] lanes = new Lane[PRIORITIES.length]; // by Priority ordinal
+    private final AtomicInteger size = new AtomicInteger();
+    private final ConcurrentHashMap<String, ConcurrentSkipListSet<Long>> byName = new ConcurrentHashMap<>();
+    private final NGramIndex<Long> search = new NGramIndex<>();
+    private final StoreListener listener;
+
+    // whose turn it is: lane ordinal in the high int, customers it may still take in the low int
+    private final AtomicLong turn = new AtomicLong();
+    private volatile int[] weights = DEFAULT_WEIGHTS;
+    private volatile int capacity = Integer.MAX_VALUE;
+
+    IndexedCustomerQueue(StoreListener listener) {
+        this.listener = listener;
+        for (Priority p : PRIORITIES) lanes[p.ordinal()] = new Lane(base(p));
+        turn.set(pack(0, weights[0]));
+    }
+
+    /** Sets how many customers each lane (in Priority order) may take per turn; each at least 1. */
+    void setWeights(int[] weights) {
+        if (weights.length != PRIORITIES.length) {
+            throw new IllegalArgumentException("Expected " + PRIORITIES.length + " lane weights");
+        }
+        for (int w : weights) {
+            if (w < 1) throw new IllegalArgumentException("Lane weights must be at least 1");
+        }
+        this.weights = weights.clone();
+    }
+
+    /** Most customers that may wait at once; 0 or less for no limit. */
+    void setCapacity(int capacity) {
+        this.capacity = capacity > 0 ? capacity : Integer.MAX_VALUE;
+    }
+
+    // Walk-in gets lane code 0, so sequence numbers from before lanes existed are walk-ins.
+    private static long base(Priority p) {
+        return (long) (PRIORITIES.length - 1 - p.ordinal()) << LANE_SHIFT;
+    }
+
+    /** The lane a sequence number (or clear bound) belongs to. */
+    static Priority laneOf(long seq) {
+        int code = (int) (seq >>> LANE_SHIFT);
+        if (code >= PRIORITIES.length) throw new IllegalStateException("Bad queue sequence number " + seq);
+        return PRIORITIES[PRIORITIES.length - 1 - code];
+    }
+
+    private Lane lane(long seq) {
+        return lanes[laneOf(seq).ordinal()];
+    }
+
+    /**
+     * Appends a customer to the lane of its priority and returns its sequence number.
+     * Throws QueueFullException, before anything is reported, if the queue is at capacity.
+     * If reporting it fails, the customer is not added and its place and number are
+     * given back.
+     */
+    long enqueue(CustomerDTO c) {
+        reserve();
+        int epoch = enter();
+        try {
+            Lane lane = lanes[c.priority().ordinal()];
+            Entry e;
+            synchronized (lane) {
+                e = new Entry(lane.nextSeq.get(), c);
+                try {
+                    listener.customerEnqueued(e.seq, c);
+                    lane.nextSeq.incrementAndGet();
+                    insert(lane, e);
+                } catch (RuntimeException ex) {
+                    size.decrementAndGet();
+                    throw ex;
+                }
+            }
+            // a clear() whose bound covers us may have finished before we were inserted;
+            // it still owns this entry (replay drops it too), so remove it ourselves
+            if (e.seq < lane.clearedBelow.get()) remove(e.seq);
+            return e.seq;
+        } finally {
+            exit(epoch);
+        }
+    }
+
+    /**
+     * Puts a customer who was just served back at the head of its lane, reported as an
+     * enqueue; for when whoever they were handed to has gone. They take the number
+     * just below the lane's head, which has already been served, so the lane's numbers
+     * stay contiguous; a dequeue racing with this may still leave a gap of one, which
+     * only makes positions in the lane one too high until this customer is served.
+     * If the lane has been cleared down to its head since, they go to the back
+     * instead, as nothing below a clear bound may come back. Not held to the capacity.
+     */
+    void requeue(CustomerDTO c) {
+        size.incrementAndGet();
+        int epoch = enter();
+        try {
+            Lane lane = lanes[c.priority().ordinal()];
+            synchronized (lane) {
+                Map.Entry<Long, Entry> head = lane.entries.firstEntry();
+                long seq = (head == null ? lane.nextSeq.get() : head.getKey()) - 1;
+                boolean atBack = seq < lane.clearedBelow.get();
+                if (atBack) seq = lane.nextSeq.get();
+                Entry e = new Entry(seq, c);
+                try {
+                    listener.customerEnqueued(e.seq, c);
+                    if (atBack) lane.nextSeq.incrementAndGet();
+                    insert(lane, e);
+                } catch (RuntimeException ex) {
+                    size.decrementAndGet();
+                    throw ex;
+                }
+            }
+        } finally {
+            exit(epoch);
+        }
+    }
+
+    // takes one place in the queue for an enqueue, so concurrent enqueues cannot overshoot
+    private void reserve() {
+        int limit = capacity;
+        for (;;) {
+            int n = size.get();
+            if (n >= limit) throw new QueueFullException(limit);
+            if (size.compareAndSet(n, n + 1)) return;
+        }
+    }
+
+    /**
+     * Re-inserts a customer under a known sequence number (log replay); not reported.
+     * The lane comes from the number. Entries below the lane's last clear bound are
+     * ignored: their enqueue may have been logged after the clear, but the live queue
+     * dropped them.
+     */
+    void restore(long seq, CustomerDTO c) {
+        Lane lane = lane(seq);
+        lane.nextSeq.accumulateAndGet(seq + 1, Math::max);
+        if (seq >= lane.clearedBelow.get() && !lane.entries.containsKey(seq)) {
+            size.incrementAndGet();
+            insert(lane, new Entry(seq, new CustomerDTO(c.name(), c.note(), laneOf(seq))));
+        }
+    }
+
+    // the caller has already counted the entry in size
+    private void insert(Lane lane, Entry e) {
+        // index first: readers verify against entries, so a posting for an entry
+        // that is not visible yet is harmless, while the reverse would hide it
+        byName.compute(e.key, (k, seqs) -> {
+            if (seqs == null) seqs = new ConcurrentSkipListSet<>();
+            seqs.add(e.seq);
+            return seqs;
+        });
+        search.add(e.seq, e.key);
+        lane.entries.put(e.seq, e);
+        lane.size.incrementAndGet();
+    }
+
+    /** Removes and returns the customer whose turn it is, if any. */
+    Optional<CustomerDTO> dequeue() {
+        for (;;) {
+            long t = turn.get();
+            int current = (int) (t >>> 32);
+            int credit = (int) t;
+            int[] w = weights;
+            // the current lane while it has credit, then each following lane with a fresh turn
+            int pick = -1, left = 0;
+            for (int i = 0; i <= lanes.length && pick < 0; i++) {
+                int l = (current + i) % lanes.length;
+                int quota = i == 0 ? Math.min(credit, w[l]) : w[l];
+                if (quota > 0 && !lanes[l].entries.isEmpty()) {
+                    pick = l;
+                    left = quota - 1;
+                }
+            }
+            if (pick < 0) return Optional.empty();
+            if (!turn.compareAndSet(t, pack(pick, left))) continue;
+            Map.Entry<Long, Entry> head = lanes[pick].entries.pollFirstEntry();
+            if (head == null) continue; // another dequeue emptied the lane after we looked
+            unindex(lanes[pick], head.getValue());
+            listener.customerDequeued(head.getKey());
+            return Optional.of(head.getValue().customer);
+        }
+    }
+
+    /**
+     * Removes up to {@code max} customers in serving order. The turns they use are
+     * claimed with a single update of the turn state, so a batch costs one contended
+     * step rather than one per customer; a customer taken meanwhile by a single-lane
+     * dequeue just makes the batch shorter.
+     */
+    List<CustomerDTO> dequeue(int max) {
+        int[] plan = new int[max]; // lane of each customer, in order
+        int n;
+        for (;;) {
+            long t = turn.get();
+            int current = (int) (t >>> 32);
+            int[] w = weights;
+            int quota = Math.min((int) t, w[current]);
+            int[] waiting = new int[lanes.length];
+            int total = 0;
+            for (int l = 0; l < lanes.length; l++) total += waiting[l] = Math.max(0, lanes[l].size.get());
+            n = 0;
+            int l = current;
+            while (n < max && n < total) {
+                int take = Math.min(Math.min(quota, waiting[l]), max - n);
+                for (int k = 0; k < take; k++) plan[n++] = l;
+                waiting[l] -= take;
+                quota -= take;
+                if (n == max || n == total) break;
+                l = (l + 1) % lanes.length;
+                quota = w[l];
+            }
+            if (n == 0) return List.of();
+            if (turn.compareAndSet(t, pack(l, quota))) break;
+        }
+        List<CustomerDTO> out = new ArrayList<>(n);
+        for (int k = 0; k < n; k++) {
+            Lane lane = lanes[plan[k]];
+            Map.Entry<Long, Entry> head = lane.entries.pollFirstEntry();
+            if (head == null) continue;
+            unindex(lane, head.getValue());
+            listener.customerDequeued(head.getKey());
+            out.add(head.getValue().customer);
+        }
+        return out;
+    }
+
+    /** Removes up to {@code max} customers from the head of one lane, ignoring turns. */
+    List<CustomerDTO> dequeue(Priority priority, int max) {
+        Lane lane = lanes[priority.ordinal()];
+        List<CustomerDTO> out = new ArrayList<>(Math.min(max, Math.max(0, lane.size.get())));
+        Map.Entry<Long, Entry> head;
+        while (out.size() < max && (head = lane.entries.pollFirstEntry()) != null) {
+            unindex(lane, head.getValue());
+            listener.customerDequeued(head.getKey());
+            out.add(head.getValue().customer);
+        }
+        return out;
+    }
+
+    /** Removes and returns the customer at the head of one lane, ignoring turns. */
+    Optional<CustomerDTO> dequeue(Priority priority) {
+        Lane lane = lanes[priority.ordinal()];
+        Map.Entry<Long, Entry> head = lane.entries.pollFirstEntry();
+        if (head == null) return Optional.empty();
+        unindex(lane, head.getValue());
+        listener.customerDequeued(head.getKey());
+        return Optional.of(head.getValue().customer);
+    }
+
+    private static long pack(int lane, int credit) {
+        return ((long) lane << 32) | (credit & 0xffffffffL);
+    }
+
+    /** Removes one customer by sequence number (log replay); not reported. */
+    void remove(long seq) {
+        Lane lane = lane(seq);
+        Entry e = lane.entries.remove(seq);
+        if (e != null) unindex(lane, e);
+    }
+
+    /** Removes every customer enqueued before this call, reported as one clear per lane. */
+    void clear() {
+        int epoch = enter();
+        try {
+            for (Lane lane : lanes) {
+                long bound = lane.nextSeq.get();
+                listener.queueCleared(bound);
+                clearBefore(bound);
+            }
+        } finally {
+            exit(epoch);
+        }
+    }
+
+    /**
+     * Removes every customer of the bound's lane with a sequence number below
+     * {@code bound}; not reported.
+     */
+    void clearBefore(long bound) {
+        Lane lane = lane(bound);
+        lane.nextSeq.accumulateAndGet(bound, Math::max);
+        lane.clearedBelow.accumulateAndGet(bound, Math::max);
+        Map.Entry<Long, Entry> head;
+        while ((head = lane.entries.firstEntry()) != null && head.getKey() < bound) {
+            if (lane.entries.remove(head.getKey(), head.getValue())) unindex(lane, head.getValue());
+        }
+    }
+
+    private void unindex(Lane lane, Entry e) {
+        lane.size.decrementAndGet();
+        size.decrementAndGet();
+        byName.computeIfPresent(e.key, (k, seqs) -> {
+            seqs.remove(e.seq);
+            return seqs.isEmpty() ? null : seqs;
+        });
+        search.remove(e.seq, e.key);
+    }
+
+    /*
+     * Enqueue and clear report themselves before they finish changing the queue. A
+     * snapshot calls quiesce() to wait for the ones already in progress, so that
+     * everything they reported is visible when it starts reading. Callers register in
+     * one of two counters picked by the current epoch; quiesce() moves the epoch on and
+     * waits only for the old counter, so new callers never hold it up.
+     */
+    private volatile int epoch;
+    private final AtomicInteger[] inFlight = {new AtomicInteger(), new AtomicInteger()};
+
+    private int enter() {
+        for (;;) {
+            int e = epoch;
+            inFlight[e & 1].incrementAndGet();
+            if (epoch == e) return e;
+            inFlight[e & 1].decrementAndGet(); // raced with quiesce(); register in the new epoch
+        }
+    }
+
+    private void exit(int e) {
+        inFlight[e & 1].decrementAndGet();
+    }
+
+    /** Waits until every enqueue and clear that started before this call has completed. */
+    synchronized void quiesce() {
+        int old = epoch;
+        epoch = old + 1;
+        while (inFlight[old & 1].get() != 0) Thread.onSpinWait();
+    }
+
+    /** Next sequence number of each lane, in Priority order (snapshots). */
+    long[] nextSeqs() {
+        long[] out = new long[lanes.length];
+        for (int i = 0; i < lanes.length; i++) out[i] = lanes[i].nextSeq.get();
+        return out;
+    }
+
+    /** Clear bound of each lane, in Priority order (snapshots). */
+    long[] clearedBelows() {
+        long[] out = new long[lanes.length];
+        for (int i = 0; i < lanes.length; i++) out[i] = lanes[i].clearedBelow.get();
+        return out;
+    }
+
+    /**
+     * Restores one lane's sequence counters from a snapshot, before any entries are
+     * loaded; the lane comes from the numbers.
+     */
+    void restoreCounters(long next, long clearedBelow) {
+        Lane lane = lane(next);
+        lane.nextSeq.accumulateAndGet(next, Math::max);
+        lane.clearedBelow.accumulateAndGet(clearedBelow, Math::max);
+    }
+
+    /** Entries of every lane, with their sequence numbers, in no particular order (snapshots). */
+    Iterator<Entry> entries() {
+        List<Iterator<Entry>> its = new ArrayList<>(lanes.length);
+        for (Lane lane : lanes) its.add(lane.entries.values().iterator());
+        return new Iterator<>() {
+            int i;
+            @Override public boolean hasNext() {
+                while (i < its.size() && !its.get(i).hasNext()) i++;
+                return i < its.size();
+            }
+            @Override public Entry next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                return its.get(i).next();
+            }
+        };
+    }
+
+    int size() {
+        return Math.max(0, size.get());
+    }
+
+    /** Whether nobody is waiting in this lane, or in the whole queue if it is null. */
+    boolean isEmpty(Priority priority) {
+        if (priority != null) return lanes[priority.ordinal()].entries.isEmpty();
+        for (Lane lane : lanes) {
+            if (!lane.entries.isEmpty()) return false;
+        }
+        return true;
+    }
+
+    /** Customers in the order they will be served if nobody else arrives. */
+    List<CustomerDTO> snapshot() {
+        List<CustomerDTO> out = new ArrayList<>(size());
+        iterator().forEachRemaining(out::add);
+        return out;
+    }
+
+    /** Customers of one lane, in order. */
+    List<CustomerDTO> snapshot(Priority priority) {
+        Lane lane = lanes[priority.ordinal()];
+        List<CustomerDTO> out = new ArrayList<>(Math.max(0, lane.size.get()));
+        for (Entry e : lane.entries.values()) out.add(e.customer);
+        return out;
+    }
+
+    /**
+     * Weakly consistent iteration in serving order, without copying: the lanes'
+     * own iterators are interleaved turn by turn, as dequeue() would take them.
+     */
+    Iterator<CustomerDTO> iterator() {
+        long t = turn.get();
+        int[] w = weights;
+        List<Iterator<Entry>> its = new ArrayList<>(lanes.length);
+        for (Lane lane : lanes) its.add(lane.entries.values().iterator());
+        return new Iterator<>() {
+            int current = (int) (t >>> 32);
+            int left = Math.min((int) t, w[current]);
+
+            @Override public boolean hasNext() {
+                for (int i = 0; i <= lanes.length; i++) {
+                    if (left > 0 && its.get(current).hasNext()) return true;
+                    current = (current + 1) % lanes.length;
+                    left = w[current];
+                }
+                return false;
+            }
+
+            @Override public CustomerDTO next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                left--;
+                return its.get(current).next().customer;
+            }
+        };
+    }
+
+    /*
+     * Serving position without walking the queue. With the turn state and each lane's
+     * size known, the customer at index i of its lane is served in a known turn of that
+     * lane; every other lane serves, before that turn, its own quota for each of its
+     * turns that come earlier, but never more customers than it has.
+     */
+    private long servingPosition(int lane, long index, long t, int[] w) {
+        int n = lanes.length;
+        int current = (int) (t >>> 32);
+        int credit = Math.min((int) t, w[current]);
+        int first = (lane - current + n) % n;        // this lane's first turn
+        int firstQuota = first == 0 ? credit : w[lane];
+        long turnNo = index < firstQuota ? first : first + n * (1 + (index - firstQuota) / w[lane]);
+        long before = index;
+        for (int m = 0; m < n; m++) {
+            if (m == lane) continue;
+            int offset = (m - current + n) % n;
+            if (turnNo <= offset) continue;
+            long turns = (turnNo - offset + n - 1) / n;
+            long slots = offset == 0 ? credit + (turns - 1) * w[m] : turns * w[m];
+            before += Math.min(slots, Math.max(0, lanes[m].size.get()));
+        }
+        return before + 1;
+    }
+
+    // Serving position of a live entry, or -1 if it has just left.
+    private long servingPosition(long seq, long t, int[] w) {
+        Lane lane = lane(seq);
+        Map.Entry<Long, Entry> head = lane.entries.firstEntry();
+        if (head == null || !lane.entries.containsKey(seq)) return -1;
+        return servingPosition(laneOf(seq).ordinal(), Math.max(0, seq - head.getKey()), t, w);
+    }
+
+    /**
+     * 1-based serving position of the first queued customer with exactly this name
+     * (case-insensitive), or empty if there is none. O(log n).
+     */
+    OptionalLong position(String name) {
+        ConcurrentSkipListSet<Long> seqs = byName.get(name.trim().toLowerCase());
+        if (seqs == null) return OptionalLong.empty();
+        long t = turn.get();
+        int[] w = weights;
+        long best = Long.MAX_VALUE;
+        for (Priority p : PRIORITIES) {
+            // the first live entry in each lane; later ones in a lane are served after it
+            long base = base(p), end = base + (1L << LANE_SHIFT);
+            for (Long seq = seqs.ceiling(base); seq != null && seq < end; seq = seqs.higher(seq)) {
+                long pos = servingPosition(seq, t, w);
+                if (pos < 0) continue; // not visible yet, or just dequeued
+                best = Math.min(best, pos);
+                break;
+            }
+        }
+        return best == Long.MAX_VALUE ? OptionalLong.empty() : OptionalLong.of(best);
+    }
+
+    /** Customers whose name contains {@code q} (already lowercase, non-empty), in serving order. */
+    List<CustomerDTO> search(String q) {
+        long t = turn.get();
+        int[] w = weights;
+        List<long[]> hits = new ArrayList<>(); // {position, seq}
+        List<Entry> entries = new ArrayList<>();
+        for (Long seq : search.candidates(q)) {
+            Entry e = lane(seq).entries.get(seq);
+            if (e == null || !e.key.contains(q)) continue;
+            long pos = servingPosition(seq, t, w);
+            if (pos < 0) continue;
+            hits.add(new long[]{pos, entries.size()});
+            entries.add(e);
+        }
+        hits.sort(Comparator.comparingLong(h -> h[0]));
+        List<CustomerDTO> out = new ArrayList<>(hits.size());
+        for (long[] h : hits) out.add(entries.get((int) h[1]).customer);
+        return out;
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.queueinv;
+
+/**
+ * Thrown when a request parameter is out of range or malformed, e.g. a page size, a
+ * paging cursor or a long-poll wait. The message is written for the client.
+ * Mapped to 400 Bad Request by GlobalExceptionHandler.
+ */
+public class InvalidRequestException extends IllegalArgumentException {
+
+    private static final long serialVersionUID = 1L;
+
+    public InvalidRequestException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,283 @@
+package com.example.queueinv;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Inventory storage behind StoreService.
+ * Keeps one mutable record per item (display name + quantity + version) so a
+ * mutation is a single hash lookup and a couple of field writes.
+ * Writers are serialized per key by a fixed set of striped locks; readers take
+ * the same stripe briefly so they never see a name and a quantity from
+ * different writes.
+ * A skip-list index ordered by the lowercase key is maintained alongside the
+ * hash map so listings come out sorted without a per-request sort, and an
+ * n-gram index over the keys answers substring searches without a full scan.
+ * Every mutation is reported to a {@link StoreListener} while its stripe is held.
+ */
+final class InventoryEngine {
+
+    private static final int STRIPES = 64; // must be a power of two
+
+    /** One inventory entry. Mutable fields are guarded by the key's stripe lock. */
+    static final class Record {
+        final String key; // lowercase name
+        String name;      // original case of the last write
+        int qty;
+        long version;
+
+        Record(String key, String name, int qty) {
+            this.key = key;
+            this.name = name;
+            this.qty = qty;
+        }
+
+        ItemDTO toDto() { return new ItemDTO(name, qty); }
+    }
+
+    private final ConcurrentHashMap<String, Record> records = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<String, Record> sorted = new ConcurrentSkipListMap<>();
+    private final NGramIndex<Record> search = new NGramIndex<>();
+    private volatile boolean searchIndexed = true; // false while a bulk load's index is being built
+    private final Object[] locks = new Object[STRIPES];
+    private final StoreListener listener;
+
+    InventoryEngine(StoreListener listener) {
+        this.listener = listener;
+        for (int i = 0; i < STRIPES; i++) locks[i] = new Object();
+    }
+
+    /** Normalized lookup key for an item name. */
+    static String keyOf(String name) {
+        return name.trim().toLowerCase();
+    }
+
+    private static int stripeOf(String key) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & (STRIPES - 1);
+    }
+
+    private Object lockFor(String key) {
+        return locks[stripeOf(key)];
+    }
+
+    /** Adds {@code amount} to the item, creating it if missing. Returns the new quantity. */
+    int addOrIncrement(String name, int amount) {
+        String display = name.trim();
+        String key = display.toLowerCase();
+        synchronized (lockFor(key)) {
+            Record r = records.get(key);
+            if (r == null) {
+                insert(new Record(key, display, amount));
+                listener.itemSaved(display, amount);
+                return amount;
+            }
+            r.name = display;
+            r.qty += amount;
+            r.version++;
+            listener.itemSaved(display, r.qty);
+            return r.qty;
+        }
+    }
+
+    /** Sets the item's quantity, creating it if missing. */
+    void setQuantity(String name, int qty) {
+        String display = name.trim();
+        String key = display.toLowerCase();
+        synchronized (lockFor(key)) {
+            Record r = records.get(key);
+            if (r == null) {
+                insert(new Record(key, display, qty));
+            } else {
+                r.name = display;
+                r.qty = qty;
+                r.version++;
+            }
+            listener.itemSaved(display, qty);
+        }
+    }
+
+    /** Whether an item with this name exists. */
+    boolean contains(String name) {
+        return records.containsKey(keyOf(name));
+    }
+
+    /**
+     * Runs {@code body} while holding the stripes of every given name, so a group of
+     * mutations is seen by other writers and per-item readers as one step. Stripes are
+     * taken in index order, so concurrent callers cannot deadlock; the engine's own
+     * methods can be called from the body because monitors are reentrant.
+     */
+    void withLocked(Collection<String> names, Runnable body) {
+        BitSet stripes = new BitSet(STRIPES);
+        for (String n : names) stripes.set(stripeOf(keyOf(n)));
+        lockAll(stripes, stripes.nextSetBit(0), body);
+    }
+
+    private void lockAll(BitSet stripes, int i, Runnable body) {
+        if (i < 0) {
+            body.run();
+            return;
+        }
+        synchronized (locks[i]) {
+            lockAll(stripes, stripes.nextSetBit(i + 1), body);
+        }
+    }
+
+    /** Removes the item. Returns false if it did not exist. */
+    boolean remove(String name) {
+        String key = keyOf(name);
+        synchronized (lockFor(key)) {
+            Record r = records.remove(key);
+            if (r == null) return false;
+            sorted.remove(key);
+            search.remove(r, key);
+            listener.itemRemoved(key);
+            return true;
+        }
+    }
+
+    /**
+     * Adds an item during a bulk load (snapshot restore) without indexing it for search
+     * or reporting it; call {@link #buildSearchIndex()} once loading is done.
+     */
+    void load(String name, int qty) {
+        searchIndexed = false;
+        String display = name.trim();
+        String key = display.toLowerCase();
+        Record r = new Record(key, display, qty);
+        records.put(key, r);
+        sorted.put(key, r);
+    }
+
+    /**
+     * Indexes every item for search after a bulk load. Safe to run in the background while
+     * the engine is in use: each item is indexed under its stripe, and until this finishes
+     * searches fall back to scanning.
+     */
+    void buildSearchIndex() {
+        for (Record r : sorted.values()) {
+            synchronized (lockFor(r.key)) {
+                if (records.get(r.key) == r) search.add(r, r.key);
+            }
+        }
+        searchIndexed = true;
+    }
+
+    // caller holds the key's stripe
+    private void insert(Record r) {
+        records.put(r.key, r);
+        sorted.put(r.key, r);
+        search.add(r, r.key);
+    }
+
+    /** Reads one item consistently. */
+    Optional<ItemDTO> get(String name) {
+        Record r = records.get(keyOf(name));
+        return r == null ? Optional.empty() : Optional.ofNullable(read(r));
+    }
+
+    int size() {
+        return records.size();
+    }
+
+    /**
+     * Snapshot of all items, sorted case-insensitively by name.
+     * Each item is read under its stripe, so every DTO reflects one complete write;
+     * items removed while the snapshot runs are skipped rather than returned half-read.
+     */
+    List<ItemDTO> snapshot() {
+        List<ItemDTO> out = new ArrayList<>(sorted.size());
+        for (Record r : sorted.values()) {
+            ItemDTO dto = read(r);
+            if (dto != null) out.add(dto);
+        }
+        return out;
+    }
+
+    /**
+     * Sorted, weakly consistent iteration over all items that materializes one DTO at a
+     * time. Concurrent mutations may or may not be reflected; each item is still read
+     * consistently under its stripe.
+     */
+    Iterator<ItemDTO> iterator() {
+        Iterator<Record> it = sorted.values().iterator();
+        return new Iterator<>() {
+            private ItemDTO next = advance();
+
+            private ItemDTO advance() {
+                while (it.hasNext()) {
+                    ItemDTO dto = read(it.next());
+                    if (dto != null) return dto;
+                }
+                return null;
+            }
+
+            @Override public boolean hasNext() { return next != null; }
+
+            @Override public ItemDTO next() {
+                if (next == null) throw new NoSuchElementException();
+                ItemDTO cur = next;
+                next = advance();
+                return cur;
+            }
+        };
+    }
+
+    /**
+     * Returns up to {@code limit} items following {@code afterKey} (exclusive) in
+     * sorted order, or from the start when {@code afterKey} is null.
+     * The returned cursor is the raw key of the last item, or null on the last page.
+     * Costs O(log n + limit) regardless of catalog size.
+     */
+    ItemPageDTO page(String afterKey, int limit) {
+        NavigableMap<String, Record> view = afterKey == null ? sorted : sorted.tailMap(afterKey, false);
+        List<ItemDTO> out = new ArrayList<>(Math.min(limit, 256));
+        Iterator<Record> it = view.values().iterator();
+        String lastKey = null;
+        while (out.size() < limit && it.hasNext()) {
+            Record r = it.next();
+            ItemDTO dto = read(r);
+            if (dto == null) continue;
+            out.add(dto);
+            lastKey = r.key;
+        }
+        return new ItemPageDTO(out, it.hasNext() ? lastKey : null);
+    }
+
+    /**
+     * Items whose name contains {@code q} (already lowercase and non-empty), sorted by name.
+     * Only candidates from the n-gram index are looked at, so the cost tracks the
+     * number of matches rather than the catalog size.
+     */
+    List<ItemDTO> search(String q) {
+        List<Record> hits = new ArrayList<>();
+        Iterable<Record> candidates = searchIndexed ? search.candidates(q) : sorted.values();
+        for (Record r : candidates) {
+            if (r.key.contains(q)) hits.add(r);
+        }
+        hits.sort(Comparator.comparing(r -> r.key));
+        List<ItemDTO> out = new ArrayList<>(hits.size());
+        for (Record r : hits) {
+            ItemDTO dto = read(r);
+            if (dto != null) out.add(dto);
+        }
+        return out;
+    }
+
+    // null if the record was removed before we got its stripe
+    private ItemDTO read(Record r) {
+        synchronized (lockFor(r.key)) {
+            return records.get(r.key) == r ? r.toDto() : null;
+        }
+    }
+}
@@ -0,0 +1,4 @@
+package com.example.queueinv;
+
+/** Change feed (GET /api/events) payload for a removed item; item changes are sent as ItemDTO. */
+public record ItemRemovedDTO(String key) {}
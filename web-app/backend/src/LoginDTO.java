@@ -0,0 +1,11 @@
+package com.example.queueinv;
+
+import jakarta.validation.constraints.NotBlank;
+
+/**
+ * DTO for user login.
+ */
+record LoginDTO(
+        @NotBlank String username,
+        @NotBlank String password
+) {}
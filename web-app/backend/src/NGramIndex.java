@@ -0,0 +1,89 @@
+package com.example.queueinv;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Incrementally maintained substring index over lowercase strings.
+ * Every gram of length 1..3 of an indexed text maps to the set of ids containing it.
+ * Queries of up to three characters are answered straight from one posting set;
+ * longer queries intersect the posting sets of their trigrams and return candidates
+ * that the caller must still verify with {@code contains}.
+ *
+ * @param <K> id type stored in the posting sets
+ */
+final class NGramIndex<K> {
+
+    private static final int N = 3;
+
+    private final ConcurrentHashMap<String, Set<K>> postings = new ConcurrentHashMap<>();
+
+    /** Indexes {@code text} (already lowercase) under {@code id}. */
+    void add(K id, String text) {
+        for (String gram : grams(text)) {
+            postings.compute(gram, (g, ids) -> {
+                if (ids == null) ids = ConcurrentHashMap.newKeySet();
+                ids.add(id);
+                return ids;
+            });
+        }
+    }
+
+    /** Removes {@code id} from the postings of {@code text}; empty posting sets are dropped. */
+    void remove(K id, String text) {
+        for (String gram : grams(text)) {
+            postings.computeIfPresent(gram, (g, ids) -> {
+                ids.remove(id);
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+    }
+
+    /**
+     * Ids whose text may contain {@code q} (already lowercase, non-empty).
+     * Exact for queries of up to three characters, a superset otherwise.
+     */
+    Collection<K> candidates(String q) {
+        if (q.length() <= N) {
+            Set<K> ids = postings.get(q);
+            return ids == null ? List.of() : new ArrayList<>(ids);
+        }
+        List<Set<K>> sets = new ArrayList<>();
+        for (String gram : trigrams(q)) {
+            Set<K> ids = postings.get(gram);
+            if (ids == null) return List.of();
+            sets.add(ids);
+        }
+        // walk the rarest gram and probe the rest
+        sets.sort(Comparator.comparingInt(Set::size));
+        List<K> out = new ArrayList<>();
+        Set<K> smallest = sets.get(0);
+        outer:
+        for (K id : smallest) {
+            for (int i = 1; i < sets.size(); i++) {
+                if (!sets.get(i).contains(id)) continue outer;
+            }
+            out.add(id);
+        }
+        return out;
+    }
+
+    private static Set<String> grams(String text) {
+        Set<String> out = new HashSet<>();
+        for (int len = 1; len <= N; len++) {
+            for (int i = 0; i + len <= text.length(); i++) out.add(text.substring(i, i + len));
+        }
+        return out;
+    }
+
+    private static Set<String> trigrams(String q) {
+        Set<String> out = new HashSet<>();
+        for (int i = 0; i + N <= q.length(); i++) out.add(q.substring(i, i + N));
+        return out;
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.queueinv;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * Defines the password encoder, shared by the servlet and the reactive build.
+ */
+@Configuration
+public class PasswordEncoderConfig {
+
+    /**
+     * This is the master bean for encoding passwords. We use BCrypt with cost
+     * {@code queueinv.auth.bcrypt-strength}, timed so its cost shows up in the metrics,
+     * and run on a pool of {@code queueinv.auth.hash-threads} threads (default: half the
+     * cores) with at most {@code queueinv.auth.hash-queue} callers waiting.
+     * Stored hashes with a different cost are rehashed on the user's next login.
+     */
+    @Bean
+    public PasswordEncoder passwordEncoder(MeterRegistry registry,
+                                           @Value("${queueinv.auth.bcrypt-strength:10}") int strength,
+                                           @Value("${queueinv.auth.hash-threads:0}") int threads,
+                                           @Value("${queueinv.auth.hash-queue:64}") int queueDepth) {
+        BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder(strength) {
+            // BCrypt itself only upgrades weaker hashes; lowering the cost should apply too
+            @Override
+            public boolean upgradeEncoding(String encodedPassword) {
+                return encodedPassword != null && bcryptCost(encodedPassword) != strength;
+            }
+        };
+        if (threads <= 0) threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        return new PooledPasswordEncoder(new TimedPasswordEncoder(bcrypt, registry), threads, queueDepth, registry);
+    }
+
+    // The cost of a hash like "$2a$10$...", or -1 if it is not BCrypt.
+    private static int bcryptCost(String hash) {
+        if (hash.length() < 7 || hash.charAt(0) != '$' || hash.charAt(3) != '$' || hash.charAt(6) != '$') return -1;
+        try {
+            return Integer.parseInt(hash.substring(4, 6));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.queueinv;
+
+/**
+ * Thrown when too many password hashes are already running or waiting.
+ * Mapped to 503 Service Unavailable by GlobalExceptionHandler.
+ */
+public class PasswordHashingBusyException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public PasswordHashingBusyException() {
+        super("Too many logins in progress. Please try again shortly.");
+    }
+}
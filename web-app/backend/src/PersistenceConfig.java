@@ -0,0 +1,39 @@
+package com.example.queueinv;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Optional durability for StoreService. Without {@code queueinv.data-dir} the store
+ * stays purely in memory, as before.
+ */
+@Configuration
+@EnableScheduling
+public class PersistenceConfig {
+
+    /**
+     * The write-ahead log. {@code queueinv.wal.mode} is FSYNC, BATCHED (default) or ASYNC;
+     * {@code queueinv.wal.window-ms} is the group-commit wait for BATCHED and the flush
+     * interval for ASYNC.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "queueinv.data-dir")
+    WriteAheadLog writeAheadLog(@Value("${queueinv.data-dir}") String dataDir,
+                                @Value("${queueinv.wal.mode:BATCHED}") WriteAheadLog.Mode mode,
+                                @Value("${queueinv.wal.window-ms:0}") long windowMs) throws IOException {
+        return new WriteAheadLog(Path.of(dataDir), mode, windowMs);
+    }
+
+    /** Snapshots that let a restart skip most of the log. */
+    @Bean
+    @ConditionalOnProperty(name = "queueinv.data-dir")
+    SnapshotStore snapshotStore(@Value("${queueinv.data-dir}") String dataDir) {
+        return new SnapshotStore(Path.of(dataDir).resolve("snapshot.bin"));
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.queueinv;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs another PasswordEncoder on a small fixed pool instead of the request thread.
+ * BCrypt is pure CPU, so a burst of logins would otherwise occupy every core and
+ * stall the inventory requests queued behind them; here at most {@code threads}
+ * hashes run at once. The caller waits for its result, but only {@code queueDepth}
+ * callers may wait: beyond that the call fails at once with
+ * {@link PasswordHashingBusyException} (503) instead of piling up.
+ */
+final class PooledPasswordEncoder implements PasswordEncoder, AutoCloseable {
+
+    private final PasswordEncoder delegate;
+    private final ThreadPoolExecutor pool;
+    private final Counter rejected;
+
+    PooledPasswordEncoder(PasswordEncoder delegate, int threads, int queueDepth, MeterRegistry registry) {
+        this.delegate = delegate;
+        AtomicInteger n = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueDepth), r -> {
+                    Thread t = new Thread(r, "password-hash-" + n.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        this.rejected = registry.counter("queueinv.auth.hash.rejected");
+        Gauge.builder("queueinv.auth.hash.queued", pool, p -> p.getQueue().size()).register(registry);
+        Gauge.builder("queueinv.auth.hash.active", pool, ThreadPoolExecutor::getActiveCount).register(registry);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return run(() -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return run(() -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword); // cheap; no need to queue it
+    }
+
+    private <T> T run(Callable<T> task) {
+        Future<T> result;
+        try {
+            result = pool.submit(task);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new PasswordHashingBusyException();
+        }
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new PasswordHashingBusyException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            if (e.getCause() instanceof Error err) throw err;
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+}
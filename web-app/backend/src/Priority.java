@@ -0,0 +1,4 @@
+package com.example.queueinv;
+
+/** Queue lanes, most urgent first. Each lane is FIFO; the lanes take turns by weight. */
+public enum Priority { VIP, APPOINTMENT, WALK_IN }
@@ -0,0 +1,4 @@
+package com.example.queueinv;
+
+/** Change feed payload for a clear: everyone with a sequence number below {@code bound} is gone. */
+public record QueueClearedDTO(long bound) {}
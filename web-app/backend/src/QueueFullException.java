@@ -0,0 +1,14 @@
+package com.example.queueinv;
+
+/**
+ * Thrown when a customer is enqueued while the queue is at capacity.
+ * Mapped to 429 Too Many Requests by GlobalExceptionHandler.
+ */
+public class QueueFullException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public QueueFullException(int capacity) {
+        super("The queue is full (" + capacity + " customers). Please try again later.");
+    }
+}
@@ -0,0 +1,3 @@
+package com.example.queueinv;
+
+public record QueuePositionDTO(String name, long position) {}
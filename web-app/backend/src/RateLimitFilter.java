@@ -0,0 +1,164 @@
+package com.example.queueinv;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits how fast one caller may search, change things, or log in (any POST under
+ * /api/auth/). A caller is the logged-in user, or the client address for anonymous
+ * requests, and each of the three budgets is tracked separately; other requests are
+ * not limited. Over budget, the request gets 429 with Retry-After. When sharded, a
+ * request another node forwarded (and signed, see ShardRouter) was already counted
+ * there; any other request is counted, whatever headers it carries.
+ * <p>
+ * Each budget is a token bucket kept as one number, the time at which the caller's
+ * bucket will be full again (GCRA), so admitting a request is a map lookup and a CAS.
+ * A bucket that is full again says nothing a fresh one would not, so those are dropped
+ * once a minute, or once a second while a budget tracks too many callers; callers
+ * beyond that share one bucket until room frees up.
+ */
+final class RateLimitFilter extends OncePerRequestFilter {
+
+    /** What a request spends; the rest of the API is not limited. */
+    enum Budget { SEARCH, MUTATION, AUTH }
+
+    /** Sustained rate and burst of one budget. */
+    record Limit(double perSecond, int burst) {
+        Limit {
+            if (perSecond <= 0 || burst < 1) throw new IllegalArgumentException("Rate limits must be positive");
+        }
+    }
+
+    private static final long SWEEP_INTERVAL = TimeUnit.MINUTES.toNanos(1);
+    private static final long FULL_SWEEP_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+    private static final String OVERFLOW = "";
+
+    private final Map<Budget, Buckets> budgets = new EnumMap<>(Budget.class);
+    private final ShardRouter shards; // null unless the inventory is sharded
+
+    RateLimitFilter(Map<Budget, Limit> limits, int maxCallers, ShardRouter shards, MeterRegistry registry) {
+        this.shards = shards;
+        for (Budget b : Budget.values()) {
+            Buckets buckets = new Buckets(limits.get(b), maxCallers,
+                    registry.counter("queueinv.ratelimit.rejected", "budget", b.name().toLowerCase()));
+            Gauge.builder("queueinv.ratelimit.callers", buckets.tat, Map::size)
+                    .tag("budget", b.name().toLowerCase())
+                    .register(registry);
+            budgets.put(b, buckets);
+        }
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Budget budget = budgetOf(request);
+        if (budget != null && !(shards != null && shards.isForwarded(request))) {
+            long wait = budgets.get(budget).acquire(callerOf(request), System.nanoTime());
+            if (wait > 0) {
+                reject(response, wait);
+                return;
+            }
+        }
+        chain.doFilter(request, response);
+    }
+
+    // The budget a request spends, or null if it is not limited.
+    static Budget budgetOf(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (!path.startsWith("/api/")) return null;
+        if (path.endsWith("/search")) return Budget.SEARCH;
+        return switch (request.getMethod()) {
+            case "POST", "PUT", "PATCH", "DELETE" -> path.startsWith("/api/auth/") ? Budget.AUTH : Budget.MUTATION;
+            default -> null;
+        };
+    }
+
+    private static String callerOf(HttpServletRequest request) {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth != null && auth.isAuthenticated() && !(auth instanceof AnonymousAuthenticationToken)) {
+            return "u:" + auth.getName();
+        }
+        return "a:" + request.getRemoteAddr();
+    }
+
+    private static void reject(HttpServletResponse response, long waitNanos) throws IOException {
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos - 1) + 1)));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write("{\"error\":\"Too many requests. Please slow down.\"}");
+    }
+
+    // One budget's buckets: caller -> theoretical arrival time, in System.nanoTime() terms.
+    private static final class Buckets {
+        final ConcurrentHashMap<String, AtomicLong> tat = new ConcurrentHashMap<>();
+        final long interval;  // nanos per request at the sustained rate
+        final long tolerance; // how far ahead of now the arrival time may run: the burst
+        final int maxCallers;
+        final Counter rejected;
+        final AtomicLong lastSweep = new AtomicLong(System.nanoTime());
+        final AtomicBoolean sweeping = new AtomicBoolean();
+
+        Buckets(Limit limit, int maxCallers, Counter rejected) {
+            this.interval = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / limit.perSecond()));
+            this.tolerance = interval * limit.burst();
+            this.maxCallers = maxCallers;
+            this.rejected = rejected;
+        }
+
+        // Takes one request's worth; returns 0 if admitted, else how long until it would be.
+        long acquire(String caller, long now) {
+            AtomicLong bucket = tat.get(caller);
+            if (bucket == null) bucket = admit(caller, now);
+            for (;;) {
+                long t = bucket.get();
+                long next = Math.max(t, now) + interval;
+                if (next - now > tolerance) {
+                    rejected.increment();
+                    return next - now - tolerance;
+                }
+                if (bucket.compareAndSet(t, next)) return 0;
+            }
+        }
+
+        // The bucket for a caller not seen lately. Full buckets are swept out first when
+        // it is time; if the map is still at its bound, the caller shares one.
+        private AtomicLong admit(String caller, long now) {
+            boolean full = tat.size() >= maxCallers;
+            if (now - lastSweep.get() >= (full ? FULL_SWEEP_INTERVAL : SWEEP_INTERVAL)) {
+                sweep(now);
+                full = tat.size() >= maxCallers;
+            }
+            return tat.computeIfAbsent(full ? OVERFLOW : caller, k -> new AtomicLong(now));
+        }
+
+        private void sweep(long now) {
+            if (!sweeping.compareAndSet(false, true)) return;
+            try {
+                lastSweep.set(now);
+                tat.values().removeIf(b -> b.get() - now <= 0);
+            } finally {
+                sweeping.set(false);
+            }
+        }
+    }
+}
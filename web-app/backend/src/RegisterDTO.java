@@ -1,17 +1,9 @@
 package com.example.queueinv;
 
-import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Pattern;
 import jakarta.validation.constraints.Size;
 
-
-public record ItemDTO(@NotBlank String name, @Min(0) int qty) {}
-public record AddOrIncDTO(@NotBlank String name, @Min(1) int amount) {}
-public record SetQtyDTO(@NotBlank String name, @Min(0) int qty) {}
-
-public record CustomerDTO(@NotBlank String name, String note) {}
-
 record RegisterDTO(
         @NotBlank
         @Size(min = 5, max = 30, message = "Username must be between 5 and 30 characters")
@@ -25,19 +17,3 @@ record RegisterDTO(
         )
         String password
 ) {}
-
-/**
- * DTO for user login.
- */
-record LoginDTO(
-        @NotBlank String username,
-        @NotBlank String password
-) {}
-
-/**
- * DUP for security responses (e.g., login success)
- */
-record AuthResponseDTO(
-        String username,
-        String message
-) {}
@@ -1,5 +1,8 @@
 package com.example.queueinv;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -7,43 +10,101 @@ import org.springframework.security.config.annotation.authentication.configurati
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.AnonymousAuthenticationFilter;
 import org.springframework.security.web.authentication.HttpStatusEntryPoint;
 import org.springframework.security.web.context.HttpSessionSecurityContextRepository;
+import org.springframework.security.web.context.SecurityContextRepository;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
 
 import static org.springframework.http.HttpMethod.POST;
 import static org.springframework.http.HttpStatus.UNAUTHORIZED;
 
 /**
- * Configures Spring Security, defines the password encoder, and sets HTTP rules.
+ * Configures Spring Security and sets HTTP rules; the password encoder is in PasswordEncoderConfig.
  */
 @Configuration
 @EnableWebSecurity
 public class SecurityConfig {
 
     /**
-     * This is the master bean for encoding passwords. We use BCrypt.
+     * This bean is required for our custom /api/auth/login endpoint.
      */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public AuthenticationManager authenticationManager(AuthenticationConfiguration authenticationConfiguration) throws Exception {
+        return authenticationConfiguration.getAuthenticationManager();
+    }
+
+    /** Where a login is kept between requests; see {@code queueinv.auth.mode}. */
+    public enum AuthMode {
+        /** In the servlet session (JSESSIONID); needs sticky sessions behind a load balancer. */
+        SESSION,
+        /** In an HMAC-signed token; any node with the same secret accepts it. */
+        TOKEN
     }
 
     /**
-     * This bean is required for our custom /api/auth/login endpoint.
+     * This bean keeps the login between requests. {@code queueinv.auth.mode} is SESSION
+     * (default) or TOKEN; TOKEN needs {@code queueinv.auth.token-secret}, the same on
+     * every node, and tokens expire after {@code queueinv.auth.token-ttl-minutes}.
      */
     @Bean
-    public AuthenticationManager authenticationManager(AuthenticationConfiguration authenticationConfiguration) throws Exception {
-        return authenticationConfiguration.getAuthenticationManager();
+    public SecurityContextRepository securityContextRepository(
+            @Value("${queueinv.auth.mode:SESSION}") AuthMode mode,
+            @Value("${queueinv.auth.token-secret:}") String tokenSecret,
+            @Value("${queueinv.auth.token-ttl-minutes:480}") long tokenTtlMinutes) {
+        return mode == AuthMode.TOKEN
+                ? new SignedTokenSecurityContextRepository(tokenSecret, Duration.ofMinutes(tokenTtlMinutes))
+                : new HttpSessionSecurityContextRepository();
+    }
+
+    /**
+     * This bean limits how fast each user (or anonymous client address) may search,
+     * change things and log in; see {@code queueinv.ratelimit.*}. Each budget allows
+     * {@code *-per-second} requests sustained with bursts of {@code *-burst}, and
+     * {@code queueinv.ratelimit.max-callers} bounds how many callers each one tracks.
+     */
+    @Bean
+    public RateLimitFilter rateLimitFilter(MeterRegistry registry, Optional<ShardRouter> shards,
+                                           @Value("${queueinv.ratelimit.search-per-second:10}") double searchRate,
+                                           @Value("${queueinv.ratelimit.search-burst:20}") int searchBurst,
+                                           @Value("${queueinv.ratelimit.mutation-per-second:50}") double mutationRate,
+                                           @Value("${queueinv.ratelimit.mutation-burst:100}") int mutationBurst,
+                                           @Value("${queueinv.ratelimit.auth-per-second:0.2}") double authRate,
+                                           @Value("${queueinv.ratelimit.auth-burst:10}") int authBurst,
+                                           @Value("${queueinv.ratelimit.max-callers:100000}") int maxCallers) {
+        return new RateLimitFilter(Map.of(
+                RateLimitFilter.Budget.SEARCH, new RateLimitFilter.Limit(searchRate, searchBurst),
+                RateLimitFilter.Budget.MUTATION, new RateLimitFilter.Limit(mutationRate, mutationBurst),
+                RateLimitFilter.Budget.AUTH, new RateLimitFilter.Limit(authRate, authBurst)),
+                maxCallers, shards.orElse(null), registry);
+    }
+
+    /**
+     * The rate limiter runs inside the security chain, where the user is known, so it
+     * must not also be registered as a servlet filter of its own.
+     */
+    @Bean
+    public FilterRegistrationBean<RateLimitFilter> rateLimitFilterRegistration(RateLimitFilter filter) {
+        FilterRegistrationBean<RateLimitFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.setEnabled(false);
+        return registration;
     }
 
     /**
      * This is the main security configuration filter chain.
      */
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain securityFilterChain(HttpSecurity http,
+                                                   SecurityContextRepository securityContextRepository,
+                                                   RateLimitFilter rateLimitFilter,
+                                                   Optional<ShardRouter> shards,
+                                                   @Value("${queueinv.ratelimit.enabled:true}") boolean rateLimited)
+            throws Exception {
         http
                 // Disable CSRF protection, common for stateless REST APIs.
                 // For session-based auth (which this is), you might want to enable it.
@@ -60,6 +121,10 @@ public class SecurityConfig {
                         // All other /api/** requests must be authenticated
                         .requestMatchers("/api/**").authenticated()
 
+                        // Health checks need no login; the metrics tell too much about the store
+                        .requestMatchers("/actuator/health").permitAll()
+                        .requestMatchers("/actuator/prometheus").authenticated()
+
                         // Deny any other request that doesn't match
                         .anyRequest().denyAll()
                 )
@@ -70,11 +135,24 @@ public class SecurityConfig {
                         .authenticationEntryPoint(new HttpStatusEntryPoint(UNAUTHORIZED))
                 )
 
-                // This explicitly enables session-based authentication
+                // Keep the login in the session or in a signed token, whichever the
+                // repository above does. A token-based login never needs a session.
                 .securityContext(context -> context
-                        .securityContextRepository(new HttpSessionSecurityContextRepository())
+                        .securityContextRepository(securityContextRepository)
+                )
+                .sessionManagement(session -> session.sessionCreationPolicy(
+                        securityContextRepository instanceof HttpSessionSecurityContextRepository
+                                ? SessionCreationPolicy.IF_REQUIRED
+                                : SessionCreationPolicy.STATELESS)
                 );
 
+        // When sharded, tell requests other nodes forwarded (and signed) from the rest
+        // before anything relies on it.
+        shards.ifPresent(s -> http.addFilterBefore(new ForwardedRequestFilter(s), AnonymousAuthenticationFilter.class));
+
+        // Once the user is known, turn away callers over their request budget.
+        if (rateLimited) http.addFilterAfter(rateLimitFilter, AnonymousAuthenticationFilter.class);
+
         return http.build();
     }
 }
@@ -0,0 +1,126 @@
+package com.example.queueinv;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * One SSE connection of the change feed, written with non-blocking servlet I/O so a
+ * client that stops reading never holds up a feed sender. Events are encoded into a
+ * buffer of their own that goes out whenever the socket can take more; once more
+ * than {@value #MAX_BUFFERED} bytes are waiting the client is not keeping up, and
+ * the connection is closed. Browsers then reconnect and resume with Last-Event-ID.
+ */
+final class ServletEventSink implements ChangeFeed.Sink, WriteListener, AsyncListener {
+
+    static final int MAX_BUFFERED = 1 << 20;
+
+    private final AsyncContext async;
+    private final ServletOutputStream out;
+    private final ObjectMapper mapper;
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream(); // guarded by this
+    private boolean closed; // guarded by this
+    private Runnable onClose; // guarded by this
+
+    private ServletEventSink(AsyncContext async, ServletOutputStream out, ObjectMapper mapper) {
+        this.async = async;
+        this.out = out;
+        this.mapper = mapper;
+    }
+
+    /** Turns the request into an open event stream; nothing is written until the socket is ready. */
+    static ServletEventSink open(HttpServletRequest request, HttpServletResponse response, ObjectMapper mapper)
+            throws IOException {
+        response.setContentType(MediaType.TEXT_EVENT_STREAM_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+        AsyncContext async = request.startAsync(request, response);
+        async.setTimeout(0); // kept open until the client leaves; heartbeats find dead ones
+        ServletEventSink sink = new ServletEventSink(async, response.getOutputStream(), mapper);
+        async.addListener(sink);
+        sink.out.setWriteListener(sink);
+        return sink;
+    }
+
+    /** Runs {@code action} once the connection is closed, at once if it already is. */
+    void onClose(Runnable action) {
+        synchronized (this) {
+            if (!closed) {
+                onClose = action;
+                return;
+            }
+        }
+        action.run();
+    }
+
+    @Override public void send(String id, String type, Object data) throws IOException {
+        append("id:" + id + "\nevent:" + type + "\ndata:" + mapper.writeValueAsString(data) + "\n\n");
+    }
+
+    @Override public void heartbeat() throws IOException {
+        append(":\n\n");
+    }
+
+    private synchronized void append(String frame) throws IOException {
+        if (closed) throw new IOException("Event stream closed");
+        if (pending.size() > MAX_BUFFERED) {
+            close();
+            throw new IOException("Client is not reading its event stream");
+        }
+        pending.writeBytes(frame.getBytes(StandardCharsets.UTF_8));
+        writeOut();
+    }
+
+    // Hands what is waiting to the container, and flushes it, as far as that is possible
+    // without blocking; the container calls onWritePossible when it can take the rest.
+    private synchronized void writeOut() throws IOException {
+        if (closed || !out.isReady()) return;
+        if (pending.size() > 0) {
+            pending.writeTo(out);
+            pending.reset();
+            if (!out.isReady()) return;
+        }
+        out.flush();
+    }
+
+    @Override public void onWritePossible() throws IOException {
+        writeOut();
+    }
+
+    @Override public void onError(Throwable t) {
+        close();
+    }
+
+    private void close() {
+        Runnable action;
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+            action = onClose;
+            pending.reset();
+        }
+        try {
+            async.complete();
+        } catch (IllegalStateException e) {
+            // already completed by the container
+        }
+        if (action != null) action.run();
+    }
+
+    /* AsyncListener: the container ended the request */
+    @Override public void onComplete(AsyncEvent event) { close(); }
+    @Override public void onTimeout(AsyncEvent event) { close(); }
+    @Override public void onError(AsyncEvent event) { close(); }
+    @Override public void onStartAsync(AsyncEvent event) {}
+}
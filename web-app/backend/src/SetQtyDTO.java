@@ -0,0 +1,6 @@
+package com.example.queueinv;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+
+public record SetQtyDTO(@NotBlank String name, @Min(0) int qty) {}
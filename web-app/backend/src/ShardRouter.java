@@ -0,0 +1,420 @@
+package com.example.queueinv;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/**
+ * Splits the inventory across several backend nodes ({@code queueinv.shard.nodes}, the
+ * base URLs of every node including this one, which is {@code queueinv.shard.self}).
+ * Each item key belongs to one node, picked by consistent hashing: every node is
+ * placed on a 64-bit ring at {@value #VIRTUAL_NODES} points and a key goes to the
+ * first point at or after its own hash, so adding a node moves only about 1/N of the keys.
+ * Writes to another node's key are forwarded to it; listings and searches are asked of
+ * every node and merged by key. The customer queue is not split: it lives on the first
+ * node and queue requests are forwarded there.
+ * Forwarded requests carry {@value #FORWARDED_HEADER} and are always served locally,
+ * so nodes with different node lists cannot bounce a request around; they are not
+ * rate limited again either. The header is an HMAC, keyed by the nodes' shared
+ * {@code queueinv.shard.secret}, over the time it was sent, the method, the path
+ * with its query, the caller's Authorization and Cookie headers (which are
+ * forwarded too, and only other nodes accept in TOKEN auth mode) and the SHA-256 of
+ * the body. ForwardedRequestFilter checks it when the request arrives. A header that
+ * does not verify, or is over {@value #MAX_FORWARD_AGE_MS} ms off this node's clock,
+ * is ignored, so clients cannot pass themselves off as another node, nor replay a
+ * node's request with another body.
+ */
+@Component
+@ConditionalOnProperty(name = "queueinv.shard.nodes")
+final class ShardRouter {
+
+    static final String FORWARDED_HEADER = "X-Queueinv-Forwarded";
+    static final String FORWARDED_ATTRIBUTE = ShardRouter.class.getName() + ".FORWARDED";
+    static final long MAX_FORWARD_AGE_MS = 30_000;
+
+    private static final int VIRTUAL_NODES = 128;
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+    private static final List<String> COPIED_HEADERS =
+            List.of(HttpHeaders.AUTHORIZATION, HttpHeaders.COOKIE, HttpHeaders.CONTENT_TYPE);
+    private static final TypeReference<List<ItemDTO>> ITEM_LIST = new TypeReference<>() {};
+    private static final Comparator<ItemDTO> BY_KEY = Comparator.comparing(i -> InventoryEngine.keyOf(i.name()));
+    private static final Base64.Encoder B64 = Base64.getUrlEncoder().withoutPadding();
+
+    private final List<String> nodes;
+    private final String self;
+    private final long[] points;  // sorted ring positions
+    private final String[] owners; // owners[i] owns points[i]
+    private final ObjectMapper mapper;
+    private final ThreadLocal<Mac> macs;
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(2))
+            .build();
+
+    ShardRouter(@Value("${queueinv.shard.nodes}") List<String> nodes,
+                @Value("${queueinv.shard.self}") String self,
+                @Value("${queueinv.shard.secret:}") String secret,
+                ObjectMapper mapper) {
+        this.nodes = nodes.stream().map(ShardRouter::normalize).distinct().toList();
+        this.self = normalize(self);
+        if (!this.nodes.contains(this.self)) {
+            throw new IllegalStateException("queueinv.shard.self (" + self + ") is not in queueinv.shard.nodes");
+        }
+        this.mapper = mapper;
+        byte[] key = secret.getBytes(StandardCharsets.UTF_8);
+        if (key.length < 32) {
+            throw new IllegalStateException("queueinv.shard.secret must be at least 32 bytes when sharded");
+        }
+        SecretKeySpec spec = new SecretKeySpec(key, "HmacSHA256");
+        this.macs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance("HmacSHA256");
+                mac.init(spec);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        // place every node on the ring; ties (vanishingly rare) go to the earlier node
+        long[][] ring = new long[this.nodes.size() * VIRTUAL_NODES][];
+        int n = 0;
+        for (int node = 0; node < this.nodes.size(); node++) {
+            for (int v = 0; v < VIRTUAL_NODES; v++) ring[n++] = new long[]{hash(this.nodes.get(node) + "#" + v), node};
+        }
+        Arrays.sort(ring, Comparator.<long[]>comparingLong(p -> p[0]).thenComparingLong(p -> p[1]));
+        this.points = new long[ring.length];
+        this.owners = new String[ring.length];
+        for (int i = 0; i < ring.length; i++) {
+            points[i] = ring[i][0];
+            owners[i] = this.nodes.get((int) ring[i][1]);
+        }
+    }
+
+    private static String normalize(String url) {
+        String u = url.trim();
+        return u.endsWith("/") ? u.substring(0, u.length() - 1) : u;
+    }
+
+    /* Placement */
+    /** The node that owns an item key. */
+    String ownerOf(String key) {
+        int i = Arrays.binarySearch(points, hash(key));
+        if (i < 0) i = -i - 1;
+        return owners[i == points.length ? 0 : i];
+    }
+
+    /** The node holding the customer queue. */
+    String queueHome() {
+        return nodes.get(0);
+    }
+
+    boolean isSelf(String node) {
+        return self.equals(node);
+    }
+
+    /** Whether another node sent this request, as ForwardedRequestFilter found when it arrived. */
+    boolean isForwarded(HttpServletRequest request) {
+        return Boolean.TRUE.equals(request.getAttribute(FORWARDED_ATTRIBUTE));
+    }
+
+    /** Whether the signed forwarding header proves another node sent this request with this body. */
+    boolean verifyForwarded(HttpServletRequest request, byte[] body) {
+        String value = request.getHeader(FORWARDED_HEADER);
+        int dot = value == null ? -1 : value.indexOf('.');
+        if (dot <= 0) return false;
+        long sentAt;
+        try {
+            sentAt = Long.parseLong(value.substring(0, dot));
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        if (Math.abs(System.currentTimeMillis() - sentAt) > MAX_FORWARD_AGE_MS) return false;
+        String expected = forwardSignature(sentAt, request.getMethod(), pathOf(request),
+                request.getHeader(HttpHeaders.AUTHORIZATION), request.getHeader(HttpHeaders.COOKIE), body);
+        return MessageDigest.isEqual(expected.getBytes(StandardCharsets.US_ASCII),
+                value.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    // "<sent at>.<HMAC>" for a request as it goes out, and as it is checked on arrival.
+    private String forwardSignature(long sentAt, String method, String path, String authorization, String cookie,
+                                    byte[] body) {
+        String signed = sentAt + "\n" + method + "\n" + path + "\n"
+                + (authorization == null ? "" : authorization) + "\n" + (cookie == null ? "" : cookie) + "\n"
+                + B64.encodeToString(sha256(body));
+        return sentAt + "." + B64.encodeToString(macs.get().doFinal(signed.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static byte[] sha256(byte[] bytes) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(bytes);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // FNV-1a over the UTF-8 bytes, then the MurmurHash3 finalizer to spread nearby strings.
+    static long hash(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : s.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /* Forwarding */
+    /**
+     * Sends this request, with {@code body} as JSON if not null, to {@code node} and
+     * returns its response.
+     */
+    ResponseEntity<byte[]> forward(String node, HttpServletRequest request, Object body) {
+        return join(forwardAsync(node, request, body, Duration.ZERO));
+    }
+
+    /**
+     * Like {@link #forward} without holding the calling thread, for a request that may
+     * legitimately take {@code wait} longer than usual to answer (a long-poll).
+     * Cancelling the result aborts the call, so the other node stops waiting too.
+     */
+    CompletableFuture<ResponseEntity<byte[]>> forwardAsync(String node, HttpServletRequest request, Object body,
+                                                           Duration wait) {
+        CompletableFuture<HttpResponse<byte[]>> call =
+                send(node, request, pathOf(request), request.getMethod(), body, TIMEOUT.plus(wait));
+        CompletableFuture<ResponseEntity<byte[]>> answer = call.thenApply(ShardRouter::relay);
+        answer.whenComplete((res, e) -> {
+            if (e instanceof CancellationException) call.cancel(true);
+        });
+        return answer;
+    }
+
+    /**
+     * The whole sorted inventory, or everything matching a search: this request is
+     * repeated on every other node and their sorted answers are merged with {@code local}.
+     */
+    List<ItemDTO> gather(HttpServletRequest request, List<ItemDTO> local) {
+        List<List<ItemDTO>> lists = new ArrayList<>();
+        lists.add(local);
+        for (HttpResponse<byte[]> res : scatter(request)) lists.add(read(res.body(), ITEM_LIST));
+        return merge(lists, Integer.MAX_VALUE);
+    }
+
+    /**
+     * One page of the merged inventory. Every node is asked for a page after the same
+     * cursor (it is just the last key returned), and the first {@code limit} of the
+     * merged answers make up the page.
+     */
+    ItemPageDTO gatherPage(HttpServletRequest request, ItemPageDTO local, int limit) {
+        List<List<ItemDTO>> lists = new ArrayList<>();
+        lists.add(local.items());
+        boolean more = local.nextCursor() != null;
+        for (HttpResponse<byte[]> res : scatter(request)) {
+            lists.add(read(res.body(), ITEM_LIST));
+            more |= res.headers().firstValue(ApiController.NEXT_CURSOR_HEADER).isPresent();
+        }
+        List<ItemDTO> merged = merge(lists, limit + 1);
+        more |= merged.size() > limit;
+        List<ItemDTO> page = merged.size() > limit ? merged.subList(0, limit) : merged;
+        String cursor = more && !page.isEmpty()
+                ? StoreService.encodeCursor(InventoryEngine.keyOf(page.get(page.size() - 1).name()))
+                : null;
+        return new ItemPageDTO(page, cursor);
+    }
+
+    /**
+     * Applies a batch whose operations may belong to several nodes: each node gets its
+     * own operations, in order, and the results are put back in request order.
+     * An atomic batch cannot span nodes and is rejected if it would. A node that turns
+     * its part down (4xx) has its answer passed on as is; the other nodes' parts may
+     * already have been applied.
+     */
+    ResponseEntity<?> applyBatch(BatchRequestDTO body, HttpServletRequest request,
+                                 Function<List<BatchOpDTO>, BatchResultDTO> local) {
+        Map<String, List<Integer>> byNode = new LinkedHashMap<>();
+        for (int i = 0; i < body.ops().size(); i++) {
+            String owner = ownerOf(InventoryEngine.keyOf(body.ops().get(i).name()));
+            byNode.computeIfAbsent(owner, k -> new ArrayList<>()).add(i);
+        }
+        if (body.atomic() && byNode.size() > 1) {
+            throw new InvalidRequestException("An atomic batch must only touch items held by one node");
+        }
+        Map<String, CompletableFuture<HttpResponse<byte[]>>> pending = new LinkedHashMap<>();
+        for (Map.Entry<String, List<Integer>> e : byNode.entrySet()) {
+            if (isSelf(e.getKey())) continue;
+            BatchRequestDTO part = new BatchRequestDTO(pick(body.ops(), e.getValue()), body.atomic());
+            pending.put(e.getKey(), send(e.getKey(), request, pathOf(request), "POST", part));
+        }
+        boolean applied = true;
+        BatchOpResultDTO[] results = new BatchOpResultDTO[body.ops().size()];
+        for (Map.Entry<String, List<Integer>> e : byNode.entrySet()) {
+            List<Integer> indexes = e.getValue();
+            BatchResultDTO part;
+            if (isSelf(e.getKey())) {
+                part = local.apply(pick(body.ops(), indexes));
+            } else {
+                HttpResponse<byte[]> res = join(pending.get(e.getKey()));
+                if (res.statusCode() >= 400 && res.statusCode() < 500) return relay(res);
+                if (res.statusCode() != HttpStatus.OK.value()) {
+                    throw new ShardUnavailableException(res.uri().getAuthority() + " answered " + res.statusCode());
+                }
+                part = read(res.body(), BatchResultDTO.class);
+            }
+            applied &= part.applied();
+            for (BatchOpResultDTO r : part.results()) {
+                int index = indexes.get(r.index());
+                results[index] = new BatchOpResultDTO(index, r.ok(), r.qty(), r.error());
+            }
+        }
+        return ApiController.batchResponse(new BatchResultDTO(applied, Arrays.asList(results)));
+    }
+
+    private static <T> List<T> pick(List<T> all, List<Integer> indexes) {
+        List<T> out = new ArrayList<>(indexes.size());
+        for (int i : indexes) out.add(all.get(i));
+        return out;
+    }
+
+    // k-way merge of lists that are each sorted by key
+    private static List<ItemDTO> merge(List<List<ItemDTO>> lists, int limit) {
+        PriorityQueue<int[]> heads = new PriorityQueue<>((a, b) ->
+                BY_KEY.compare(lists.get(a[0]).get(a[1]), lists.get(b[0]).get(b[1])));
+        int total = 0;
+        for (int i = 0; i < lists.size(); i++) {
+            if (!lists.get(i).isEmpty()) heads.add(new int[]{i, 0});
+            total += lists.get(i).size();
+        }
+        List<ItemDTO> out = new ArrayList<>(Math.min(total, limit));
+        while (out.size() < limit && !heads.isEmpty()) {
+            int[] h = heads.poll();
+            out.add(lists.get(h[0]).get(h[1]));
+            if (++h[1] < lists.get(h[0]).size()) heads.add(h);
+        }
+        return out;
+    }
+
+    /* HTTP */
+    // The same GET on every other node, in parallel.
+    private List<HttpResponse<byte[]>> scatter(HttpServletRequest request) {
+        List<CompletableFuture<HttpResponse<byte[]>>> calls = new ArrayList<>();
+        for (String node : nodes) {
+            if (!isSelf(node)) calls.add(send(node, request, pathOf(request), "GET", null));
+        }
+        List<HttpResponse<byte[]>> out = new ArrayList<>(calls.size());
+        for (CompletableFuture<HttpResponse<byte[]>> call : calls) {
+            HttpResponse<byte[]> res = join(call);
+            if (res.statusCode() != HttpStatus.OK.value()) {
+                throw new ShardUnavailableException(res.uri().getAuthority() + " answered " + res.statusCode());
+            }
+            out.add(res);
+        }
+        return out;
+    }
+
+    // Another node's answer as this node's, with the headers the API sets.
+    private static ResponseEntity<byte[]> relay(HttpResponse<byte[]> res) {
+        ResponseEntity.BodyBuilder out = ResponseEntity.status(res.statusCode());
+        for (String h : List.of(HttpHeaders.CONTENT_TYPE, HttpHeaders.RETRY_AFTER, ApiController.NEXT_CURSOR_HEADER)) {
+            res.headers().firstValue(h).ifPresent(v -> out.header(h, v));
+        }
+        return out.body(res.body());
+    }
+
+    private CompletableFuture<HttpResponse<byte[]>> send(String node, HttpServletRequest request, String path,
+                                                         String method, Object body) {
+        return send(node, request, path, method, body, TIMEOUT);
+    }
+
+    private CompletableFuture<HttpResponse<byte[]>> send(String node, HttpServletRequest request, String path,
+                                                         String method, Object body, Duration timeout) {
+        byte[] json;
+        try {
+            json = body == null ? new byte[0] : mapper.writeValueAsBytes(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        HttpRequest.Builder b = HttpRequest.newBuilder(URI.create(node + path))
+                .timeout(timeout)
+                .header(FORWARDED_HEADER, forwardSignature(System.currentTimeMillis(), method, path,
+                        request.getHeader(HttpHeaders.AUTHORIZATION), request.getHeader(HttpHeaders.COOKIE), json));
+        for (String h : COPIED_HEADERS) {
+            String v = request.getHeader(h);
+            if (v != null) b.header(h, v);
+        }
+        if (body != null) {
+            b.header(HttpHeaders.CONTENT_TYPE, "application/json");
+            b.method(method, HttpRequest.BodyPublishers.ofByteArray(json));
+        } else {
+            b.method(method, HttpRequest.BodyPublishers.noBody());
+        }
+        return client.sendAsync(b.build(), HttpResponse.BodyHandlers.ofByteArray())
+                .exceptionally(e -> {
+                    throw new ShardUnavailableException(node + " is unreachable: " + e.getMessage());
+                });
+    }
+
+    private static String pathOf(HttpServletRequest request) {
+        String query = request.getQueryString();
+        return query == null ? request.getRequestURI() : request.getRequestURI() + "?" + query;
+    }
+
+    private static <T> T join(CompletableFuture<T> call) {
+        try {
+            return call.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw e;
+        }
+    }
+
+    private <T> T read(byte[] json, TypeReference<T> type) {
+        try {
+            return mapper.readValue(json, type);
+        } catch (IOException e) {
+            throw new ShardUnavailableException("Unreadable answer from another node: " + e.getMessage());
+        }
+    }
+
+    private <T> T read(byte[] json, Class<T> type) {
+        try {
+            return mapper.readValue(json, type);
+        } catch (IOException e) {
+            throw new ShardUnavailableException("Unreadable answer from another node: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.queueinv;
+
+/**
+ * Thrown when another shard node cannot be reached or gives an unusable answer.
+ * Mapped to 502 Bad Gateway by GlobalExceptionHandler.
+ */
+public class ShardUnavailableException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public ShardUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.queueinv;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.DeferredSecurityContext;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.context.HttpRequestResponseHolder;
+import org.springframework.security.web.context.SecurityContextRepository;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the login in a signed token instead of the servlet session, so any node that
+ * shares the secret can authenticate a request without shared session state.
+ * A token is {@code base64url(expiry ":" username) "." base64url(HMAC-SHA256)}; it is
+ * set as an HttpOnly cookie at login and also accepted as {@code Authorization: Bearer}.
+ * Tokens cannot be revoked before they expire, other than by changing the secret.
+ * Verified tokens are cached, so a repeat request costs a map lookup rather than
+ * decoding and an HMAC.
+ */
+final class SignedTokenSecurityContextRepository implements SecurityContextRepository {
+
+    static final String COOKIE = "QUEUEINV_TOKEN";
+
+    private static final String BEARER = "Bearer ";
+    private static final int MAX_CACHED = 10_000;
+    private static final Base64.Encoder B64 = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder B64D = Base64.getUrlDecoder();
+
+    private record Verified(String username, long expiresAtMillis) {}
+
+    private final SecretKeySpec key;
+    private final Duration ttl;
+    private final ThreadLocal<Mac> macs;
+    private final ConcurrentHashMap<String, Verified> verified = new ConcurrentHashMap<>();
+
+    SignedTokenSecurityContextRepository(String secret, Duration ttl) {
+        byte[] bytes = secret == null ? new byte[0] : secret.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length < 32) {
+            throw new IllegalStateException("queueinv.auth.token-secret must be at least 32 bytes in TOKEN mode");
+        }
+        this.key = new SecretKeySpec(bytes, "HmacSHA256");
+        this.ttl = ttl;
+        this.macs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance("HmacSHA256");
+                mac.init(key);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    /* Loading */
+    @Override
+    public DeferredSecurityContext loadDeferredContext(HttpServletRequest request) {
+        Authentication authentication = authenticate(tokenOf(request));
+        return new DeferredSecurityContext() {
+            @Override public SecurityContext get() {
+                SecurityContext context = SecurityContextHolder.createEmptyContext();
+                context.setAuthentication(authentication);
+                return context;
+            }
+
+            @Override public boolean isGenerated() {
+                return authentication == null;
+            }
+        };
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public SecurityContext loadContext(HttpRequestResponseHolder holder) {
+        return loadDeferredContext(holder.getRequest()).get();
+    }
+
+    @Override
+    public boolean containsContext(HttpServletRequest request) {
+        return authenticate(tokenOf(request)) != null;
+    }
+
+    private static String tokenOf(HttpServletRequest request) {
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (header != null && header.startsWith(BEARER)) return header.substring(BEARER.length()).trim();
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) return null;
+        for (Cookie c : cookies) {
+            if (COOKIE.equals(c.getName())) return c.getValue();
+        }
+        return null;
+    }
+
+    // The login a token stands for, or null if it is missing, forged or expired.
+    private Authentication authenticate(String token) {
+        if (token == null || token.isEmpty()) return null;
+        long now = System.currentTimeMillis();
+        Verified v = verified.get(token);
+        if (v == null) {
+            v = verify(token);
+            if (v == null) return null;
+            if (verified.size() >= MAX_CACHED) verified.clear(); // crude, but bounded
+            verified.put(token, v);
+        }
+        if (v.expiresAtMillis() <= now) {
+            verified.remove(token);
+            return null;
+        }
+        return UsernamePasswordAuthenticationToken.authenticated(v.username(), null, List.of());
+    }
+
+    private Verified verify(String token) {
+        int dot = token.indexOf('.');
+        if (dot <= 0) return null;
+        try {
+            byte[] payload = B64D.decode(token.substring(0, dot));
+            byte[] signature = B64D.decode(token.substring(dot + 1));
+            if (!MessageDigest.isEqual(sign(payload), signature)) return null;
+            String claims = new String(payload, StandardCharsets.UTF_8);
+            int colon = claims.indexOf(':');
+            if (colon <= 0) return null;
+            long expiresAt = Long.parseLong(claims.substring(0, colon));
+            return new Verified(claims.substring(colon + 1), expiresAt);
+        } catch (IllegalArgumentException e) { // bad base64 or expiry
+            return null;
+        }
+    }
+
+    private byte[] sign(byte[] payload) {
+        return macs.get().doFinal(payload);
+    }
+
+    /* Saving */
+    /**
+     * Issues a token for the context's login as a cookie, or clears the cookie if the
+     * context holds no login. Only called explicitly, by AuthController after a login.
+     */
+    @Override
+    public void saveContext(SecurityContext context, HttpServletRequest request, HttpServletResponse response) {
+        Authentication authentication = context.getAuthentication();
+        ResponseCookie.ResponseCookieBuilder cookie;
+        if (authentication == null || authentication instanceof AnonymousAuthenticationToken
+                || !authentication.isAuthenticated()) {
+            cookie = ResponseCookie.from(COOKIE, "").maxAge(0);
+        } else {
+            cookie = ResponseCookie.from(COOKIE, issue(authentication.getName())).maxAge(ttl);
+        }
+        response.addHeader(HttpHeaders.SET_COOKIE, cookie
+                .httpOnly(true)
+                .secure(request.isSecure())
+                .sameSite("Lax")
+                .path("/")
+                .build()
+                .toString());
+    }
+
+    private String issue(String username) {
+        long expiresAt = System.currentTimeMillis() + ttl.toMillis();
+        byte[] payload = (expiresAt + ":" + username).getBytes(StandardCharsets.UTF_8);
+        return B64.encodeToString(payload) + "." + B64.encodeToString(sign(payload));
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.queueinv;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * Takes a StoreService snapshot every {@code queueinv.snapshot.interval-ms}
+ * (default five minutes) when persistence is enabled.
+ */
+@Component
+@ConditionalOnProperty(name = "queueinv.data-dir")
+public class SnapshotScheduler {
+
+    private final StoreService svc;
+
+    public SnapshotScheduler(StoreService svc) {
+        this.svc = svc;
+    }
+
+    @Scheduled(fixedDelayString = "${queueinv.snapshot.interval-ms:300000}",
+               initialDelayString = "${queueinv.snapshot.interval-ms:300000}")
+    public void snapshot() throws IOException {
+        svc.checkpoint();
+    }
+}
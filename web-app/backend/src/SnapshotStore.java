@@ -0,0 +1,181 @@
+package com.example.queueinv;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+
+/**
+ * Compact binary snapshot of the inventory and the customer queue, written and read
+ * through memory-mapped regions so a restart decodes the file in place instead of
+ * parsing it.
+ *
+ * Layout (big-endian):
+ * <pre>
+ * long magic, long walGeneration, int lanes, (long nextSeq, long clearedBelow)*lanes
+ * items:  (int nameLen, name bytes, int qty)*            int -1
+ * queue:  (long seq, int nameLen, name, int noteLen, note)* long -1
+ * long magic
+ * </pre>
+ * The trailing magic tells a complete file from one cut short; a new snapshot is
+ * written to a temporary file and renamed over the old one.
+ * Files from before queue lanes ({@code QISNAP01}) have a single counter pair in place
+ * of the lane count and pairs; they are still read, as the walk-in lane.
+ */
+final class SnapshotStore {
+
+    private static final long MAGIC = 0x5149534E41503032L;    // "QISNAP02"
+    private static final long MAGIC_V1 = 0x5149534E41503031L; // "QISNAP01", one queue lane
+    private static final long REGION = 64L * 1024 * 1024;
+
+    /** What a snapshot holds besides the data itself; one queue counter pair per lane. */
+    record Header(long walGeneration, long[] nextSeq, long[] clearedBelow) {}
+
+    /** Receives the contents of a snapshot while it is read. */
+    interface Loader {
+        void header(Header header);
+        void item(String name, int qty);
+        void customer(long seq, CustomerDTO customer);
+    }
+
+    private final Path file;
+
+    SnapshotStore(Path file) {
+        this.file = file;
+    }
+
+    boolean exists() {
+        return Files.exists(file);
+    }
+
+    /** Writes a new snapshot and atomically replaces the previous one, durably once this returns. */
+    void write(Header header, Iterator<ItemDTO> items, Iterator<IndexedCustomerQueue.Entry> queue) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            Region out = new Region(ch, FileChannel.MapMode.READ_WRITE);
+            int lanes = header.nextSeq().length;
+            out.ensure(20 + 16 * lanes);
+            out.buf.putLong(MAGIC).putLong(header.walGeneration()).putInt(lanes);
+            for (int i = 0; i < lanes; i++) out.buf.putLong(header.nextSeq()[i]).putLong(header.clearedBelow()[i]);
+            while (items.hasNext()) {
+                ItemDTO it = items.next();
+                byte[] name = it.name().getBytes(StandardCharsets.UTF_8);
+                out.ensure(8 + name.length);
+                out.buf.putInt(name.length).put(name).putInt(it.qty());
+            }
+            out.ensure(4);
+            out.buf.putInt(-1);
+            while (queue.hasNext()) {
+                IndexedCustomerQueue.Entry e = queue.next();
+                byte[] name = e.customer.name().getBytes(StandardCharsets.UTF_8);
+                byte[] note = e.customer.note().getBytes(StandardCharsets.UTF_8);
+                out.ensure(16 + name.length + note.length);
+                out.buf.putLong(e.seq).putInt(name.length).put(name).putInt(note.length).put(note);
+            }
+            out.ensure(16);
+            out.buf.putLong(-1L).putLong(MAGIC);
+            long size = out.finish();
+            ch.truncate(size);
+            ch.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        // the rename is only durable once the directory is: until then a crash can bring
+        // back the old snapshot, which needs log segments the caller is about to delete
+        try (FileChannel dir = FileChannel.open(file.toAbsolutePath().getParent(), StandardOpenOption.READ)) {
+            dir.force(true);
+        }
+    }
+
+    /** Feeds the snapshot to {@code loader}. Fails if the file is incomplete or not a snapshot. */
+    void read(Loader loader) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            Region in = new Region(ch, FileChannel.MapMode.READ_ONLY);
+            in.ensure(8);
+            long magic = in.buf.getLong();
+            if (magic == MAGIC) {
+                in.ensure(12);
+                long generation = in.buf.getLong();
+                int lanes = in.buf.getInt();
+                if (lanes < 0 || lanes > 64) throw new IOException("Corrupt snapshot: " + file);
+                long[] next = new long[lanes], cleared = new long[lanes];
+                in.ensure(16 * lanes);
+                for (int i = 0; i < lanes; i++) {
+                    next[i] = in.buf.getLong();
+                    cleared[i] = in.buf.getLong();
+                }
+                loader.header(new Header(generation, next, cleared));
+            } else if (magic == MAGIC_V1) {
+                in.ensure(24);
+                long generation = in.buf.getLong();
+                loader.header(new Header(generation, new long[]{in.buf.getLong()}, new long[]{in.buf.getLong()}));
+            } else {
+                throw new IOException("Not a snapshot: " + file);
+            }
+            for (;;) {
+                in.ensure(4);
+                int len = in.buf.getInt();
+                if (len < 0) break;
+                in.ensure(len + 4);
+                String name = in.string(len);
+                loader.item(name, in.buf.getInt());
+            }
+            for (;;) {
+                in.ensure(8);
+                long seq = in.buf.getLong();
+                if (seq < 0) break;
+                in.ensure(4);
+                String name = in.string(in.buf.getInt());
+                in.ensure(4);
+                String note = in.string(in.buf.getInt());
+                loader.customer(seq, new CustomerDTO(name, note));
+            }
+            in.ensure(8);
+            if (in.buf.getLong() != magic) throw new IOException("Truncated snapshot: " + file);
+        }
+    }
+
+    // A window onto the file that is remapped further along whenever the next record
+    // would not fit, so files larger than one mapping (2 GB) work too.
+    private static final class Region {
+        final FileChannel ch;
+        final FileChannel.MapMode mode;
+        MappedByteBuffer buf;
+        long base;
+
+        Region(FileChannel ch, FileChannel.MapMode mode) {
+            this.ch = ch;
+            this.mode = mode;
+        }
+
+        void ensure(int bytes) throws IOException {
+            if (buf != null && buf.remaining() >= bytes) return;
+            if (buf != null) {
+                if (mode == FileChannel.MapMode.READ_WRITE) buf.force();
+                base += buf.position();
+            }
+            long size = mode == FileChannel.MapMode.READ_WRITE
+                    ? Math.max(REGION, bytes)
+                    : Math.min(REGION, ch.size() - base);
+            if (size < bytes) throw new IOException("Truncated snapshot");
+            buf = ch.map(mode, base, size);
+        }
+
+        String string(int len) throws IOException {
+            ensure(len);
+            byte[] bytes = new byte[len];
+            buf.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        long finish() {
+            buf.force();
+            return base + buf.position();
+        }
+    }
+}
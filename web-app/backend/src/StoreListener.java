@@ -0,0 +1,29 @@
+package com.example.queueinv;
+
+/**
+ * Receives every StoreService mutation after it has been applied.
+ * Inventory callbacks run while the item's stripe lock is held, so for any one item
+ * they arrive in the same order the writes happened. Implementations must be quick
+ * and must not call back into the store.
+ * Inventory changes are reported as the resulting quantity rather than the delta,
+ * which makes them safe to replay more than once.
+ */
+interface StoreListener {
+
+    StoreListener NONE = new StoreListener() {};
+
+    /** An item was created or its quantity changed; {@code name} is the display name. */
+    default void itemSaved(String name, int qty) {}
+
+    /** An item was removed; {@code key} is its lowercase name. */
+    default void itemRemoved(String key) {}
+
+    /** A customer was appended with sequence number {@code seq}. */
+    default void customerEnqueued(long seq, CustomerDTO customer) {}
+
+    /** The customer with sequence number {@code seq} left the queue. */
+    default void customerDequeued(long seq) {}
+
+    /** Every customer with a sequence number below {@code bound} was removed. */
+    default void queueCleared(long bound) {}
+}
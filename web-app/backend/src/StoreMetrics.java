@@ -0,0 +1,82 @@
+package com.example.queueinv;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+/**
+ * Meters for StoreService. Every meter is registered up front and kept in a field, so
+ * recording on the hot path is a pair of nanoTime calls and a histogram update, with
+ * no registry lookups or tag allocation.
+ * <ul>
+ *   <li>{@code queueinv.store.operation} (timer, tag {@code op}): latency of each operation</li>
+ *   <li>{@code queueinv.inventory.size}, {@code queueinv.queue.length} (gauges)</li>
+ *   <li>{@code queueinv.search.results} (summary, tag {@code target}): hits per search</li>
+ * </ul>
+ */
+final class StoreMetrics {
+
+    final Timer listItems, listPage, addOrIncrement, setQuantity, removeItem, applyBatch, searchItems;
+    final Timer listQueue, enqueue, dequeue, clearQueue, queuePosition, searchQueue;
+    final Timer checkpoint;
+    final DistributionSummary inventorySearchResults, queueSearchResults;
+
+    /** Meters that record nothing, for a store created outside Spring. */
+    static StoreMetrics none() {
+        return new StoreMetrics(new CompositeMeterRegistry(), () -> 0, () -> 0);
+    }
+
+    StoreMetrics(MeterRegistry registry, IntSupplier inventorySize, IntSupplier queueLength) {
+        listItems = timer(registry, "listItems");
+        listPage = timer(registry, "listPage");
+        addOrIncrement = timer(registry, "addOrIncrement");
+        setQuantity = timer(registry, "setQuantity");
+        removeItem = timer(registry, "removeItem");
+        applyBatch = timer(registry, "applyBatch");
+        searchItems = timer(registry, "searchItems");
+        listQueue = timer(registry, "listQueue");
+        enqueue = timer(registry, "enqueue");
+        dequeue = timer(registry, "dequeue");
+        clearQueue = timer(registry, "clearQueue");
+        queuePosition = timer(registry, "queuePosition");
+        searchQueue = timer(registry, "searchQueue");
+        checkpoint = timer(registry, "checkpoint");
+        inventorySearchResults = searchResults(registry, "inventory");
+        queueSearchResults = searchResults(registry, "queue");
+        Gauge.builder("queueinv.inventory.size", inventorySize::getAsInt)
+                .description("Distinct items in the inventory")
+                .register(registry);
+        Gauge.builder("queueinv.queue.length", queueLength::getAsInt)
+                .description("Customers waiting in the queue")
+                .register(registry);
+    }
+
+    /** Records the time since {@code startNanos} (a System.nanoTime() reading). */
+    static void stop(Timer timer, long startNanos) {
+        timer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    // Store operations take microseconds, far below the default 1 ms lowest bucket.
+    private static Timer timer(MeterRegistry registry, String op) {
+        return Timer.builder("queueinv.store.operation")
+                .tag("op", op)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(500))
+                .maximumExpectedValue(Duration.ofSeconds(5))
+                .register(registry);
+    }
+
+    private static DistributionSummary searchResults(MeterRegistry registry, String target) {
+        return DistributionSummary.builder("queueinv.search.results")
+                .tag("target", target)
+                .publishPercentileHistogram()
+                .maximumExpectedValue(10_000.0)
+                .register(registry);
+    }
+}
@@ -1,72 +1,549 @@
 package com.example.queueinv;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedDeque;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 public class StoreService {
-    private final Map<String, Integer> inventory = new ConcurrentHashMap<>(); // key=lowercase name
-    private final Map<String, String> inventoryNames = new ConcurrentHashMap<>(); // original case
-    private final Deque<CustomerDTO> queue = new ConcurrentLinkedDeque<>();
+    public static final int MAX_PAGE_SIZE = 1000;
+    public static final int MAX_BATCH_SIZE = 1000;
+    public static final long MAX_DEQUEUE_WAIT_MS = 60_000;
+
+    // mutations are reported to both; they stay NONE until the log has been replayed
+    private volatile StoreListener journal = StoreListener.NONE;
+    private volatile StoreListener feed = StoreListener.NONE;
+    private final ChangeFeed changes = new ChangeFeed();
+    private final InventoryEngine inventory = new InventoryEngine(new Forwarder());
+    private final IndexedCustomerQueue queue = new IndexedCustomerQueue(new Forwarder());
+    private final WriteAheadLog wal;
+    private final SnapshotStore snapshots;
+    // bumped after each change is visible, so a version read before a listing never claims more than it shows
+    private final AtomicLong inventoryVersion = new AtomicLong();
+    private final AtomicLong queueVersion = new AtomicLong();
+    private final StoreMetrics metrics;
+    // long-polling dequeues, oldest first; served on enqueue, expired by the timer
+    private final ConcurrentLinkedQueue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+    private final ScheduledExecutorService waitTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "queue-dequeue-timeout");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /** In-memory store without metrics or a queue capacity; state is lost on restart. */
+    public StoreService() {
+        this.wal = null;
+        this.snapshots = null;
+        this.metrics = StoreMetrics.none();
+        feed = changes;
+    }
+
+    /**
+     * Persistent store (when configured): loads the latest snapshot, replays the log
+     * written since it was taken, then logs every mutation.
+     * {@code queueinv.queue.lane-weights} is how many customers the VIP, appointment and
+     * walk-in lanes may each take per turn; {@code queueinv.queue.capacity} is how many
+     * may wait at once (0 for no limit).
+     */
+    @Autowired
+    public StoreService(Optional<WriteAheadLog> wal, Optional<SnapshotStore> snapshots,
+                        MeterRegistry registry,
+                        @Value("${queueinv.queue.lane-weights:4,2,1}") int[] laneWeights,
+                        @Value("${queueinv.queue.capacity:10000}") int queueCapacity) throws IOException {
+        this.wal = wal.orElse(null);
+        this.snapshots = snapshots.orElse(null);
+        this.metrics = new StoreMetrics(registry, inventory::size, queue::size);
+        queue.setWeights(laneWeights);
+        queue.setCapacity(queueCapacity);
+        long fromGeneration = 0;
+        if (this.snapshots != null && this.snapshots.exists()) fromGeneration = loadSnapshot();
+        if (this.wal != null) {
+            this.wal.replay(new Replayer(), fromGeneration);
+            journal = this.wal;
+        }
+        feed = changes;
+    }
 
     /* Inventory */
+    /** Increases with every inventory change; two equal readings mean nothing changed in between. */
+    public long inventoryVersion() {
+        return inventoryVersion.get();
+    }
+
     public List<ItemDTO> listItems() {
-        return inventory.entrySet().stream()
-                .map(e -> new ItemDTO(inventoryNames.get(e.getKey()), e.getValue()))
-                .sorted(Comparator.comparing(ItemDTO::name, String.CASE_INSENSITIVE_ORDER))
-                .toList();
+        long start = System.nanoTime();
+        List<ItemDTO> items = inventory.snapshot();
+        StoreMetrics.stop(metrics.listItems, start);
+        return items;
+    }
+
+    /** Sorted inventory streamed one item at a time; weakly consistent under concurrent writes. */
+    public Iterable<ItemDTO> iterateItems() {
+        return inventory::iterator;
+    }
+
+    /**
+     * One page of the sorted inventory. {@code cursor} is the opaque
+     * {@code nextCursor} of the previous page, or null for the first page.
+     */
+    public ItemPageDTO listItems(String cursor, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new InvalidRequestException("limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        long start = System.nanoTime();
+        ItemPageDTO page = inventory.page(decodeCursor(cursor), limit);
+        StoreMetrics.stop(metrics.listPage, start);
+        return new ItemPageDTO(page.items(), encodeCursor(page.nextCursor()));
     }
 
     public void addOrIncrement(String name, int amount) {
-        String key = name.trim().toLowerCase();
-        inventoryNames.put(key, name.trim());
-        inventory.merge(key, amount, Integer::sum);
+        long start = System.nanoTime();
+        inventory.addOrIncrement(name, amount);
+        inventoryVersion.incrementAndGet();
+        sync();
+        StoreMetrics.stop(metrics.addOrIncrement, start);
     }
 
     public void setQuantity(String name, int qty) {
-        String key = name.trim().toLowerCase();
-        inventoryNames.put(key, name.trim());
-        inventory.put(key, qty);
+        long start = System.nanoTime();
+        inventory.setQuantity(name, qty);
+        inventoryVersion.incrementAndGet();
+        sync();
+        StoreMetrics.stop(metrics.setQuantity, start);
     }
 
     public boolean removeItem(String name) {
-        String key = name.trim().toLowerCase();
-        inventoryNames.remove(key);
-        return inventory.remove(key) != null;
+        long start = System.nanoTime();
+        boolean removed = inventory.remove(name);
+        if (removed) inventoryVersion.incrementAndGet();
+        sync();
+        StoreMetrics.stop(metrics.removeItem, start);
+        return removed;
+    }
+
+    /**
+     * Applies a list of inventory mutations in order.
+     * Non-atomic batches apply every valid operation and report failures per operation.
+     * Atomic batches hold the stripes of every touched item, check all operations
+     * first, and apply either all of them or none ({@code applied == false}).
+     */
+    public BatchResultDTO applyBatch(List<BatchOpDTO> ops, boolean atomic) {
+        long start = System.nanoTime();
+        try {
+            return applyOps(ops, atomic);
+        } finally {
+            StoreMetrics.stop(metrics.applyBatch, start);
+        }
+    }
+
+    private BatchResultDTO applyOps(List<BatchOpDTO> ops, boolean atomic) {
+        BatchOpResultDTO[] results = new BatchOpResultDTO[ops.size()];
+        boolean[] valid = {true};
+        for (int i = 0; i < ops.size(); i++) {
+            String error = validate(ops.get(i));
+            if (error != null) {
+                results[i] = new BatchOpResultDTO(i, false, null, error);
+                valid[0] = false;
+            }
+        }
+        if (!atomic) {
+            boolean changed = false;
+            for (int i = 0; i < ops.size(); i++) {
+                if (results[i] != null) continue;
+                results[i] = apply(i, ops.get(i));
+                changed |= results[i].ok();
+            }
+            if (changed) inventoryVersion.incrementAndGet(); // else cached listings and ETags stay valid
+            sync();
+            return new BatchResultDTO(true, List.of(results));
+        }
+        if (valid[0]) {
+            inventory.withLocked(ops.stream().map(BatchOpDTO::name).toList(), () -> {
+                // deletes of missing items are the only thing that can fail once validated;
+                // replay the batch against existence alone to catch them before anything is written
+                Map<String, Boolean> exists = new HashMap<>();
+                for (int i = 0; i < ops.size(); i++) {
+                    BatchOpDTO op = ops.get(i);
+                    boolean has = exists.computeIfAbsent(InventoryEngine.keyOf(op.name()), k -> inventory.contains(k));
+                    if (op.op() == BatchOpType.DELETE && !has) {
+                        results[i] = new BatchOpResultDTO(i, false, null, "Item not found");
+                        valid[0] = false;
+                    }
+                    exists.put(InventoryEngine.keyOf(op.name()), op.op() != BatchOpType.DELETE);
+                }
+                if (!valid[0]) return;
+                for (int i = 0; i < ops.size(); i++) results[i] = apply(i, ops.get(i));
+            });
+        }
+        if (valid[0]) inventoryVersion.incrementAndGet();
+        sync();
+        if (!valid[0]) {
+            for (int i = 0; i < results.length; i++) {
+                if (results[i] == null) results[i] = new BatchOpResultDTO(i, false, null, "Not applied");
+            }
+        }
+        return new BatchResultDTO(valid[0], List.of(results));
+    }
+
+    private static String validate(BatchOpDTO op) {
+        return switch (op.op()) {
+            case INCREMENT -> op.amount() == null || op.amount() < 1 ? "amount must be at least 1" : null;
+            case SET -> op.qty() == null || op.qty() < 0 ? "qty must be at least 0" : null;
+            case DELETE -> null;
+        };
+    }
+
+    private BatchOpResultDTO apply(int index, BatchOpDTO op) {
+        return switch (op.op()) {
+            case INCREMENT -> new BatchOpResultDTO(index, true, inventory.addOrIncrement(op.name(), op.amount()), null);
+            case SET -> {
+                inventory.setQuantity(op.name(), op.qty());
+                yield new BatchOpResultDTO(index, true, op.qty(), null);
+            }
+            case DELETE -> inventory.remove(op.name())
+                    ? new BatchOpResultDTO(index, true, null, null)
+                    : new BatchOpResultDTO(index, false, null, "Item not found");
+        };
     }
 
     public List<ItemDTO> searchItems(String q) {
         String s = q == null ? "" : q.trim().toLowerCase();
         if (s.isEmpty()) return List.of();
-        return listItems().stream()
-                .filter(it -> it.name().toLowerCase().contains(s))
-                .collect(Collectors.toList());
+        long start = System.nanoTime();
+        List<ItemDTO> hits = inventory.search(s);
+        StoreMetrics.stop(metrics.searchItems, start);
+        metrics.inventorySearchResults.record(hits.size());
+        return hits;
+    }
+
+    // Cursors are the last key of a page, base64url-encoded so clients treat them as opaque.
+    static String encodeCursor(String key) {
+        if (key == null) return null;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) return null;
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidRequestException("Invalid cursor");
+        }
     }
 
     /* Queue */
+    /** Increases with every queue change; two equal readings mean nothing changed in between. */
+    public long queueVersion() {
+        return queueVersion.get();
+    }
+
+    /** Every queued customer, in the order they will be served if nobody else arrives. */
     public List<CustomerDTO> listQueue() {
-        return List.copyOf(queue);
+        long start = System.nanoTime();
+        List<CustomerDTO> customers = queue.snapshot();
+        StoreMetrics.stop(metrics.listQueue, start);
+        return customers;
+    }
+
+    /** The customers of one lane, in order. */
+    public List<CustomerDTO> listQueue(Priority lane) {
+        long start = System.nanoTime();
+        List<CustomerDTO> customers = queue.snapshot(lane);
+        StoreMetrics.stop(metrics.listQueue, start);
+        return customers;
+    }
+
+    /** Queue contents streamed in serving order without copying; weakly consistent under concurrent writes. */
+    public Iterable<CustomerDTO> iterateQueue() {
+        return queue::iterator;
     }
 
+    /** Adds a customer, or throws QueueFullException if the queue is at capacity. */
     public void enqueue(CustomerDTO c) {
-        queue.addLast(new CustomerDTO(c.name().trim(), Optional.ofNullable(c.note()).orElse("").trim()));
+        long start = System.nanoTime();
+        queue.enqueue(new CustomerDTO(c.name().trim(), Optional.ofNullable(c.note()).orElse("").trim(),
+                Optional.ofNullable(c.priority()).orElse(Priority.WALK_IN)));
+        queueVersion.incrementAndGet();
+        sync();
+        StoreMetrics.stop(metrics.enqueue, start);
+        if (!waiters.isEmpty()) serveWaiters();
     }
 
+    /** Serves the customer whose turn it is. */
     public Optional<CustomerDTO> dequeue() {
-        return Optional.ofNullable(queue.pollFirst());
+        return dequeue(null);
+    }
+
+    /** Serves the customer whose turn it is, or the head of {@code lane} if one is given. */
+    public Optional<CustomerDTO> dequeue(Priority lane) {
+        long start = System.nanoTime();
+        Optional<CustomerDTO> next = lane == null ? queue.dequeue() : queue.dequeue(lane);
+        if (next.isPresent()) queueVersion.incrementAndGet();
+        sync();
+        StoreMetrics.stop(metrics.dequeue, start);
+        return next;
+    }
+
+    /**
+     * Serves up to {@code max} customers at once in serving order (or from the head of
+     * {@code lane} if one is given), e.g. to hand one to each free desk.
+     */
+    public List<CustomerDTO> dequeue(Priority lane, int max) {
+        if (max < 1 || max > MAX_BATCH_SIZE) {
+            throw new InvalidRequestException("max must be between 1 and " + MAX_BATCH_SIZE);
+        }
+        long start = System.nanoTime();
+        List<CustomerDTO> served = lane == null ? queue.dequeue(max) : queue.dequeue(lane, max);
+        if (!served.isEmpty()) queueVersion.incrementAndGet();
+        sync();
+        StoreMetrics.stop(metrics.dequeue, start);
+        return served;
+    }
+
+    /**
+     * Serves customers one by one, in serving order or from one lane, for as long as the
+     * caller keeps asking. {@code hasNext()} only looks, so a caller may stop at any
+     * point without losing anyone; each {@code next()} serves whoever's turn it is then.
+     * With other callers serving too, {@code next()} may find nobody left and throw
+     * NoSuchElementException. Ends when nobody is waiting.
+     */
+    public Iterator<CustomerDTO> drainQueue(Priority lane) {
+        return new Iterator<>() {
+            @Override public boolean hasNext() {
+                return !queue.isEmpty(lane);
+            }
+
+            @Override public CustomerDTO next() {
+                return dequeue(lane).orElseThrow(NoSuchElementException::new);
+            }
+        };
+    }
+
+    /**
+     * Like {@link #dequeue(Priority)}, but if nobody is waiting the answer is held back
+     * for up to {@code waitMs} until a customer arrives, without holding a thread.
+     * Completes empty when the time runs out. Waiters are served oldest first, ahead of
+     * the next plain dequeue only if they get there first. Cancelling the future (the
+     * client went away) withdraws it; a customer being handed to it at that moment goes
+     * back to the head of their lane.
+     */
+    public CompletableFuture<Optional<CustomerDTO>> dequeue(Priority lane, long waitMs) {
+        if (waitMs < 0 || waitMs > MAX_DEQUEUE_WAIT_MS) {
+            throw new InvalidRequestException("waitMs must be between 0 and " + MAX_DEQUEUE_WAIT_MS);
+        }
+        Optional<CustomerDTO> now = dequeue(lane);
+        if (now.isPresent() || waitMs == 0) return CompletableFuture.completedFuture(now);
+        Waiter w = new Waiter(lane);
+        w.result.whenComplete((c, e) -> { if (e != null) expire(w); });
+        waiters.add(w);
+        waitTimer.schedule(() -> expire(w), waitMs, TimeUnit.MILLISECONDS);
+        serveWaiters(); // a customer may have arrived before we were listed
+        return w.result;
+    }
+
+    // Hands waiting customers to waiters in arrival order. Serialized, so each waiter is
+    // offered customers by one thread at a time; an enqueue that finds the list empty
+    // needs no call, since a waiter listed after it calls this itself.
+    private void serveWaiters() {
+        List<Map.Entry<Waiter, CustomerDTO>> served = new ArrayList<>();
+        synchronized (waiters) {
+            for (Iterator<Waiter> it = waiters.iterator(); it.hasNext() && queue.size() > 0; ) {
+                Waiter w = it.next();
+                if (!w.state.compareAndSet(Waiter.WAITING, Waiter.SERVING)) {
+                    if (w.state.get() == Waiter.DONE) it.remove();
+                    continue;
+                }
+                Optional<CustomerDTO> next = w.lane == null ? queue.dequeue() : queue.dequeue(w.lane);
+                if (next.isPresent()) {
+                    w.state.set(Waiter.DONE);
+                    it.remove();
+                    queueVersion.incrementAndGet();
+                    served.add(Map.entry(w, next.get()));
+                } else {
+                    w.state.set(Waiter.WAITING);
+                    if (w.expired) expire(w); // timed out while we were trying
+                }
+            }
+        }
+        if (served.isEmpty()) return;
+        sync();
+        List<CustomerDTO> unclaimed = new ArrayList<>();
+        for (Map.Entry<Waiter, CustomerDTO> e : served) {
+            // false if the waiter was cancelled while it was being served
+            if (!e.getKey().result.complete(Optional.of(e.getValue()))) unclaimed.add(e.getValue());
+        }
+        if (unclaimed.isEmpty()) return;
+        // last first, so customers of one lane end up back in the order they left it
+        for (int i = unclaimed.size() - 1; i >= 0; i--) queue.requeue(unclaimed.get(i));
+        queueVersion.incrementAndGet();
+        sync();
+        if (!waiters.isEmpty()) serveWaiters();
+    }
+
+    // Gives up on a waiter unless a customer is being handed to it right now, in which
+    // case serveWaiters sees the flag and calls again once it is done.
+    private void expire(Waiter w) {
+        w.expired = true;
+        if (w.state.compareAndSet(Waiter.WAITING, Waiter.DONE)) {
+            waiters.remove(w);
+            w.result.complete(Optional.empty());
+        }
+    }
+
+    private static final class Waiter {
+        static final int WAITING = 0, SERVING = 1, DONE = 2;
+
+        final Priority lane; // null for whoever's turn it is
+        final CompletableFuture<Optional<CustomerDTO>> result = new CompletableFuture<>();
+        final AtomicInteger state = new AtomicInteger(WAITING);
+        volatile boolean expired;
+
+        Waiter(Priority lane) {
+            this.lane = lane;
+        }
     }
 
     public void clearQueue() {
+        long start = System.nanoTime();
         queue.clear();
+        queueVersion.incrementAndGet();
+        sync();
+        StoreMetrics.stop(metrics.clearQueue, start);
+    }
+
+    /** 1-based serving position of the first queued customer with this exact name (case-insensitive). */
+    public OptionalLong queuePosition(String name) {
+        long start = System.nanoTime();
+        OptionalLong position = queue.position(name);
+        StoreMetrics.stop(metrics.queuePosition, start);
+        return position;
     }
 
     public List<CustomerDTO> searchQueue(String q) {
         String s = q == null ? "" : q.trim().toLowerCase();
         if (s.isEmpty()) return List.of();
-        return queue.stream().filter(c -> c.name().toLowerCase().contains(s)).toList();
+        long start = System.nanoTime();
+        List<CustomerDTO> hits = queue.search(s);
+        StoreMetrics.stop(metrics.searchQueue, start);
+        metrics.queueSearchResults.record(hits.size());
+        return hits;
+    }
+
+    /* Persistence */
+
+    // waits for this thread's log records to become durable, per the log's mode, then
+    // publishes its changes to the feed; every mutation ends here once it is visible
+    private void sync() {
+        try {
+            if (wal != null) wal.sync();
+        } finally {
+            changes.publish();
+        }
+    }
+
+    /**
+     * Writes a snapshot and deletes the log segments it makes redundant. Writers are not
+     * blocked: the log is rolled first, and anything that changes while the snapshot is
+     * being read is also in the new segment, where replaying it again is harmless.
+     * No-op for an in-memory store.
+     */
+    public synchronized void checkpoint() throws IOException {
+        if (wal == null || snapshots == null) return;
+        long start = System.nanoTime();
+        long generation = wal.roll();
+        queue.quiesce(); // enqueues logged before the roll must be visible to the snapshot
+        SnapshotStore.Header header = new SnapshotStore.Header(generation, queue.nextSeqs(), queue.clearedBelows());
+        snapshots.write(header, inventory.iterator(), queue.entries()); // durable, rename included, before the segments go
+        wal.deleteBefore(generation);
+        StoreMetrics.stop(metrics.checkpoint, start);
+    }
+
+    /** Live feed of every change, for pushing to clients. */
+    ChangeFeed changes() {
+        return changes;
+    }
+
+    /** Takes a final snapshot on shutdown so the next start has no log to replay. */
+    @PreDestroy
+    public void shutdown() throws IOException {
+        changes.close();
+        waitTimer.shutdownNow();
+        checkpoint();
+    }
+
+    // Returns the log generation to replay from. The search index is built in the
+    // background so the service can start answering before it is done.
+    private long loadSnapshot() throws IOException {
+        long[] generation = new long[1];
+        snapshots.read(new SnapshotStore.Loader() {
+            @Override public void header(SnapshotStore.Header h) {
+                generation[0] = h.walGeneration();
+                for (int i = 0; i < h.nextSeq().length; i++) queue.restoreCounters(h.nextSeq()[i], h.clearedBelow()[i]);
+            }
+            @Override public void item(String name, int qty) { inventory.load(name, qty); }
+            @Override public void customer(long seq, CustomerDTO c) { queue.restore(seq, c); }
+        });
+        Thread indexer = new Thread(inventory::buildSearchIndex, "inventory-search-index");
+        indexer.setDaemon(true);
+        indexer.start();
+        return generation[0];
+    }
+
+    // Hands mutations to whatever the journal and feed currently are. The feed only
+    // claims its events here; sync() publishes them. If the journal fails, the mutation
+    // in progress is abandoned before sync(), so what this thread claimed before it is
+    // published right away rather than leaving subscribers waiting for it.
+    private final class Forwarder implements StoreListener {
+        @Override public void itemSaved(String name, int qty) {
+            log(() -> journal.itemSaved(name, qty));
+            feed.itemSaved(name, qty);
+        }
+        @Override public void itemRemoved(String key) {
+            log(() -> journal.itemRemoved(key));
+            feed.itemRemoved(key);
+        }
+        @Override public void customerEnqueued(long seq, CustomerDTO c) {
+            log(() -> journal.customerEnqueued(seq, c));
+            feed.customerEnqueued(seq, c);
+        }
+        @Override public void customerDequeued(long seq) {
+            log(() -> journal.customerDequeued(seq));
+            feed.customerDequeued(seq);
+        }
+        @Override public void queueCleared(long bound) {
+            log(() -> journal.queueCleared(bound));
+            feed.queueCleared(bound);
+        }
+
+        private void log(Runnable append) {
+            try {
+                append.run();
+            } catch (RuntimeException e) {
+                changes.publish();
+                throw e;
+            }
+        }
+    }
+
+    // Applies logged mutations on startup, before the journal is attached.
+    private final class Replayer implements StoreListener {
+        @Override public void itemSaved(String name, int qty) { inventory.setQuantity(name, qty); }
+        @Override public void itemRemoved(String key) { inventory.remove(key); }
+        @Override public void customerEnqueued(long seq, CustomerDTO c) { queue.restore(seq, c); }
+        @Override public void customerDequeued(long seq) { queue.remove(seq); }
+        @Override public void queueCleared(long bound) { queue.clearBefore(bound); }
     }
 }
@@ -0,0 +1,55 @@
+package com.example.queueinv;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * Times another PasswordEncoder. With BCrypt, hashing and verification dominate the
+ * cost of register and login, so they are recorded as {@code queueinv.auth.password}
+ * with {@code op} = {@code encode} or {@code matches}.
+ */
+final class TimedPasswordEncoder implements PasswordEncoder {
+
+    private final PasswordEncoder delegate;
+    private final Timer encode;
+    private final Timer matches;
+
+    TimedPasswordEncoder(PasswordEncoder delegate, MeterRegistry registry) {
+        this.delegate = delegate;
+        this.encode = timer(registry, "encode");
+        this.matches = timer(registry, "matches");
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        long start = System.nanoTime();
+        try {
+            return delegate.encode(rawPassword);
+        } finally {
+            StoreMetrics.stop(encode, start);
+        }
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        long start = System.nanoTime();
+        try {
+            return delegate.matches(rawPassword, encodedPassword);
+        } finally {
+            StoreMetrics.stop(matches, start);
+        }
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    private static Timer timer(MeterRegistry registry, String op) {
+        return Timer.builder("queueinv.auth.password")
+                .tag("op", op)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+}
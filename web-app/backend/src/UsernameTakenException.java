@@ -0,0 +1,14 @@
+package com.example.queueinv;
+
+/**
+ * Thrown when someone registers under a username that is already in use.
+ * Mapped to 409 Conflict by GlobalExceptionHandler.
+ */
+public class UsernameTakenException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public UsernameTakenException() {
+        super("Username already taken. Please choose another.");
+    }
+}
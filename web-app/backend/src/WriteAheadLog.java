@@ -0,0 +1,416 @@
+package com.example.queueinv;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of StoreService mutations, replayed on startup.
+ * Records are appended to an in-memory buffer while the mutation's lock is held
+ * (cheap, and keeps log order equal to apply order); the caller then calls
+ * {@link #sync()} outside the lock to wait for durability according to {@link Mode}.
+ *
+ * The log is split into numbered segments so that a snapshot can retire everything
+ * before the segment that was current when it started (see {@link #roll()}).
+ *
+ * Record layout: {@code int length, int crc32, byte op, fields...} where strings are
+ * {@code int length + UTF-8 bytes}. A torn or corrupt tail is cut off on replay.
+ */
+final class WriteAheadLog implements StoreListener, Closeable {
+
+    enum Mode {
+        /** Every mutation issues its own fsync before it returns. Simplest, slowest. */
+        FSYNC,
+        /**
+         * Every mutation is durable before it returns, but one fsync covers every record
+         * pending at the time (group commit); the window optionally holds the flush open
+         * for stragglers.
+         */
+        BATCHED,
+        /** Mutations return immediately; a background thread forces the log once per window. */
+        ASYNC
+    }
+
+    private static final byte ITEM_SAVED = 1;
+    private static final byte ITEM_REMOVED = 2;
+    private static final byte ENQUEUED = 3;
+    private static final byte DEQUEUED = 4;
+    private static final byte CLEARED = 5;
+
+    private static final int HEADER = 8; // length + crc
+
+    private static final Pattern SEGMENT = Pattern.compile("wal-(\\d+)\\.log");
+
+    private final Path dir;
+    private final Mode mode;
+    private final long windowNanos;
+    private FileChannel channel; // guarded by ioLock
+    private long generation;     // guarded by ioLock
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ReentrantLock ioLock = new ReentrantLock(true); // fair, so a thread that just flushed can't barge ahead of waiters and flush alone
+
+    private ByteBuffer pending = ByteBuffer.allocate(64 * 1024); // guarded by lock
+    private ByteBuffer spare = ByteBuffer.allocate(64 * 1024);   // guarded by ioLock
+    private long appendedLsn;                                      // guarded by lock
+    private volatile long durableLsn;
+    private volatile IOException failure;
+    private volatile boolean closed;
+
+    private final ThreadLocal<long[]> lastLsn = ThreadLocal.withInitial(() -> new long[1]);
+    private final CRC32 crc = new CRC32(); // guarded by lock
+    private final Thread flusher;
+
+    /**
+     * Opens the log kept in {@code dir} as numbered segment files ({@code wal-<n>.log}).
+     * Nothing can be appended until {@link #replay} has run.
+     */
+    WriteAheadLog(Path dir, Mode mode, long windowMillis) throws IOException {
+        this.dir = dir;
+        this.mode = mode;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, windowMillis));
+        Files.createDirectories(dir);
+        if (mode != Mode.ASYNC) {
+            this.flusher = null;
+        } else {
+            this.flusher = new Thread(this::flushLoop, "wal-flusher");
+            this.flusher.setDaemon(true);
+        }
+    }
+
+    /**
+     * Feeds every intact record of segments {@code fromGeneration} and later to
+     * {@code target} in log order, deletes older segments (a snapshot covers them),
+     * cuts off a torn tail and opens the newest segment for appending.
+     * Must be called once, before any append.
+     */
+    void replay(StoreListener target, long fromGeneration) throws IOException {
+        deleteBefore(fromGeneration);
+        List<Long> gens = segments();
+        for (int i = 0; i < gens.size(); i++) {
+            boolean last = i == gens.size() - 1;
+            try (FileChannel ch = FileChannel.open(segment(gens.get(i)), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                long good = replaySegment(ch, target);
+                if (good < ch.size()) {
+                    // only the segment being written at crash time can be torn
+                    if (!last) throw new IOException("Corrupt log segment " + segment(gens.get(i)));
+                    ch.truncate(good);
+                }
+            }
+        }
+        generation = gens.isEmpty() ? Math.max(1, fromGeneration) : gens.get(gens.size() - 1);
+        channel = openSegment(generation);
+        if (flusher != null) flusher.start();
+    }
+
+    private long replaySegment(FileChannel ch, StoreListener target) throws IOException {
+        long size = ch.size();
+        long good = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        CRC32 check = new CRC32();
+        while (good + HEADER <= size) {
+            header.clear();
+            readFully(ch, header, good);
+            int len = header.getInt(0);
+            int sum = header.getInt(4);
+            if (len <= 0 || good + HEADER + len > size) break;
+            ByteBuffer body = ByteBuffer.allocate(len);
+            readFully(ch, body, good + HEADER);
+            check.reset();
+            check.update(body.array(), 0, len);
+            if ((int) check.getValue() != sum) break;
+            apply(body, target);
+            good += HEADER + len;
+        }
+        return good;
+    }
+
+    private static void readFully(FileChannel ch, ByteBuffer buf, long pos) throws IOException {
+        while (buf.hasRemaining()) {
+            if (ch.read(buf, pos + buf.position()) < 0) throw new IOException("Unexpected end of log segment");
+        }
+        buf.flip();
+    }
+
+    /**
+     * Makes everything appended so far durable in the current segment and starts a new
+     * one. Returns the new segment's generation: replaying from it gives every mutation
+     * that was logged after this call. Appends are held off only for the final flush.
+     */
+    long roll() throws IOException {
+        checkUsable();
+        ioLock.lock();
+        try {
+            lock.lock();
+            try {
+                pending.flip();
+                while (pending.hasRemaining()) channel.write(pending);
+                pending.clear();
+                channel.force(false);
+                durableLsn = appendedLsn;
+                channel.close();
+                channel = openSegment(++generation);
+                return generation;
+            } finally {
+                lock.unlock();
+            }
+        } catch (IOException e) {
+            fail(e);
+            throw e;
+        } finally {
+            ioLock.unlock();
+        }
+    }
+
+    /** Deletes segments older than {@code generation}, once a snapshot has made them redundant. */
+    void deleteBefore(long generation) throws IOException {
+        for (long gen : segments()) {
+            if (gen < generation) Files.deleteIfExists(segment(gen));
+        }
+    }
+
+    private List<Long> segments() throws IOException {
+        List<Long> gens = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "wal-*.log")) {
+            for (Path f : files) {
+                Matcher m = SEGMENT.matcher(f.getFileName().toString());
+                if (m.matches()) gens.add(Long.parseLong(m.group(1)));
+            }
+        }
+        gens.sort(null);
+        return gens;
+    }
+
+    private Path segment(long gen) {
+        return dir.resolve(String.format("wal-%010d.log", gen));
+    }
+
+    private FileChannel openSegment(long gen) throws IOException {
+        FileChannel ch = FileChannel.open(segment(gen), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        ch.position(ch.size());
+        return ch;
+    }
+
+    private static void apply(ByteBuffer b, StoreListener target) {
+        switch (b.get()) {
+            case ITEM_SAVED -> {
+                String name = getString(b);
+                target.itemSaved(name, b.getInt());
+            }
+            case ITEM_REMOVED -> target.itemRemoved(getString(b));
+            case ENQUEUED -> {
+                long seq = b.getLong();
+                String name = getString(b);
+                target.customerEnqueued(seq, new CustomerDTO(name, getString(b)));
+            }
+            case DEQUEUED -> target.customerDequeued(b.getLong());
+            case CLEARED -> target.queueCleared(b.getLong());
+            default -> throw new IllegalStateException("Unknown log record type");
+        }
+    }
+
+    /* Appends, called under the mutation's lock */
+
+    @Override
+    public void itemSaved(String name, int qty) {
+        byte[] n = name.getBytes(StandardCharsets.UTF_8);
+        checkUsable();
+        lock.lock();
+        try {
+            int body = reserve(1 + 4 + n.length + 4);
+            pending.put(ITEM_SAVED).putInt(n.length).put(n).putInt(qty);
+            seal(body);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void itemRemoved(String key) {
+        byte[] k = key.getBytes(StandardCharsets.UTF_8);
+        checkUsable();
+        lock.lock();
+        try {
+            int body = reserve(1 + 4 + k.length);
+            pending.put(ITEM_REMOVED).putInt(k.length).put(k);
+            seal(body);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void customerEnqueued(long seq, CustomerDTO customer) {
+        byte[] n = customer.name().getBytes(StandardCharsets.UTF_8);
+        byte[] note = (customer.note() == null ? "" : customer.note()).getBytes(StandardCharsets.UTF_8);
+        checkUsable();
+        lock.lock();
+        try {
+            int body = reserve(1 + 8 + 4 + n.length + 4 + note.length);
+            pending.put(ENQUEUED).putLong(seq).putInt(n.length).put(n).putInt(note.length).put(note);
+            seal(body);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void customerDequeued(long seq) {
+        checkUsable();
+        lock.lock();
+        try {
+            int body = reserve(1 + 8);
+            pending.put(DEQUEUED).putLong(seq);
+            seal(body);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void queueCleared(long bound) {
+        checkUsable();
+        lock.lock();
+        try {
+            int body = reserve(1 + 8);
+            pending.put(CLEARED).putLong(bound);
+            seal(body);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Under lock: makes room for one record in pending, skips its header and returns
+    // where its body starts.
+    private int reserve(int bodyLen) {
+        if (pending.remaining() < HEADER + bodyLen) {
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + HEADER + bodyLen));
+            pending.flip();
+            bigger.put(pending);
+            pending = bigger;
+        }
+        pending.position(pending.position() + HEADER);
+        return pending.position();
+    }
+
+    // Under lock: fills in the header of the record whose body starts at bodyStart and
+    // assigns its LSN.
+    private void seal(int bodyStart) {
+        int len = pending.position() - bodyStart;
+        crc.reset();
+        crc.update(pending.array(), bodyStart, len);
+        pending.putInt(bodyStart - HEADER, len);
+        pending.putInt(bodyStart - 4, (int) crc.getValue());
+        lastLsn.get()[0] = ++appendedLsn;
+    }
+
+    /* Durability */
+
+    /**
+     * Waits until everything this thread has appended is durable, as far as the mode
+     * promises: forced to disk for FSYNC and BATCHED, nothing for ASYNC.
+     */
+    void sync() {
+        if (mode == Mode.ASYNC) return;
+        long lsn = lastLsn.get()[0];
+        if (mode == Mode.FSYNC) {
+            flushPending(lsn, 0, true);
+        } else if (durableLsn < lsn) {
+            flushPending(lsn, windowNanos, false);
+        }
+        if (durableLsn < lsn) checkUsable();
+    }
+
+    // Writes out and forces everything appended so far. Only one thread does I/O at a
+    // time, and it takes every pending record with it, so callers that queued up behind
+    // it usually find their records already durable when they get the lock (group commit).
+    // {@code gatherNanos} lets the writer wait for more records to join before swapping.
+    private void flushPending(long lsn, long gatherNanos, boolean alwaysForce) {
+        ioLock.lock();
+        try {
+            if (!alwaysForce && durableLsn >= lsn) return;
+            if (gatherNanos > 0) LockSupport.parkNanos(gatherNanos);
+            long upTo;
+            ByteBuffer out;
+            lock.lock();
+            try {
+                upTo = appendedLsn;
+                if (upTo == durableLsn && !alwaysForce) return;
+                out = pending;
+                pending = spare;
+            } finally {
+                lock.unlock();
+            }
+            out.flip();
+            while (out.hasRemaining()) channel.write(out);
+            channel.force(false);
+            out.clear();
+            spare = out;
+            durableLsn = upTo;
+        } catch (IOException e) {
+            fail(e);
+        } finally {
+            ioLock.unlock();
+        }
+    }
+
+    // ASYNC only: forces whatever has accumulated once per window.
+    private void flushLoop() {
+        while (!closed && failure == null) {
+            LockSupport.parkNanos(Math.max(windowNanos, TimeUnit.MILLISECONDS.toNanos(1)));
+            flushPending(Long.MAX_VALUE, 0, false);
+        }
+    }
+
+    private void fail(IOException e) {
+        failure = e;
+    }
+
+    private void checkUsable() {
+        IOException f = failure;
+        if (f != null) throw new UncheckedIOException("Write-ahead log in " + dir + " failed", f);
+        if (closed) throw new IllegalStateException("Write-ahead log in " + dir + " is closed");
+    }
+
+    /** Flushes whatever is pending, stops the flusher and closes the file. */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        flushPending(Long.MAX_VALUE, 0, false);
+        closed = true;
+        if (flusher != null) {
+            try {
+                flusher.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        ioLock.lock();
+        try {
+            if (channel != null) channel.close();
+        } finally {
+            ioLock.unlock();
+        }
+    }
+
+    private static String getString(ByteBuffer b) {
+        byte[] bytes = new byte[b.getInt()];
+        b.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
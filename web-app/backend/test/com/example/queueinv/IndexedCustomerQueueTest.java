@@ -0,0 +1,292 @@
+package com.example.queueinv;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IndexedCustomerQueueTest {
+
+    // what the queue reported, in order
+    static class Recorder implements StoreListener {
+        final List<Long> enqueued = new CopyOnWriteArrayList<>();
+        final List<Long> dequeued = new CopyOnWriteArrayList<>();
+        final List<Long> cleared = new CopyOnWriteArrayList<>();
+
+        @Override public void customerEnqueued(long seq, CustomerDTO customer) { enqueued.add(seq); }
+        @Override public void customerDequeued(long seq) { dequeued.add(seq); }
+        @Override public void queueCleared(long bound) { cleared.add(bound); }
+    }
+
+    private static CustomerDTO customer(String name, Priority p) {
+        return new CustomerDTO(name, null, p);
+    }
+
+    private static List<String> names(List<CustomerDTO> customers) {
+        return customers.stream().map(CustomerDTO::name).toList();
+    }
+
+    private static List<String> drain(IndexedCustomerQueue q) {
+        List<String> out = new ArrayList<>();
+        for (Optional<CustomerDTO> c; (c = q.dequeue()).isPresent(); ) out.add(c.get().name());
+        return out;
+    }
+
+    @Test
+    void lanesTakeTurnsByWeight() {
+        IndexedCustomerQueue q = new IndexedCustomerQueue(StoreListener.NONE);
+        for (int i = 0; i < 3; i++) q.enqueue(customer("w" + i, Priority.WALK_IN));
+        for (int i = 0; i < 3; i++) q.enqueue(customer("a" + i, Priority.APPOINTMENT));
+        for (int i = 0; i < 6; i++) q.enqueue(customer("v" + i, Priority.VIP));
+
+        List<String> expected = List.of("v0", "v1", "v2", "v3", "a0", "a1", "w0", "v4", "v5", "a2", "w1", "w2");
+        assertEquals(expected, names(q.snapshot()));
+        assertEquals(expected, drain(q));
+        assertEquals(0, q.size());
+        assertTrue(q.isEmpty(null));
+    }
+
+    @Test
+    void weightsCanBeChanged() {
+        IndexedCustomerQueue q = new IndexedCustomerQueue(StoreListener.NONE);
+        q.setWeights(new int[]{1, 1, 1});
+        for (Priority p : Priority.values()) {
+            for (int i = 0; i < 2; i++) q.enqueue(customer(p.name().charAt(0) + "" + i, p));
+        }
+        assertEquals(List.of("V0", "A0", "W0", "V1", "A1", "W1"), drain(q));
+    }
+
+    @Test
+    void batchDequeueFollowsTheSameTurns() {
+        IndexedCustomerQueue q = new IndexedCustomerQueue(StoreListener.NONE);
+        for (int i = 0; i < 5; i++) q.enqueue(customer("v" + i, Priority.VIP));
+        for (int i = 0; i < 3; i++) q.enqueue(customer("w" + i, Priority.WALK_IN));
+        List<String> order = names(q.snapshot());
+
+        List<String> served = new ArrayList<>(names(q.dequeue(3)));
+        served.addAll(names(q.dequeue(10)));
+        assertEquals(order, served);
+    }
+
+    @Test
+    void eachLaneIsFifo() {
+        IndexedCustomerQueue q = new IndexedCustomerQueue(StoreListener.NONE);
+        for (int i = 0; i < 10; i++) q.enqueue(customer("c" + i, Priority.values()[i % 3]));
+        assertEquals(List.of("c1", "c4", "c7"), names(q.snapshot(Priority.APPOINTMENT)));
+        assertEquals("c1", q.dequeue(Priority.APPOINTMENT).orElseThrow().name());
+        assertEquals(List.of("c4", "c7"), names(q.dequeue(Priority.APPOINTMENT, 5)));
+        assertTrue(q.isEmpty(Priority.APPOINTMENT));
+        assertFalse(q.isEmpty(null));
+    }
+
+    @Test
+    void positionsMatchServingOrder() {
+        IndexedCustomerQueue q = new IndexedCustomerQueue(StoreListener.NONE);
+        for (int i = 0; i < 30; i++) q.enqueue(customer("c" + i, Priority.values()[(i * 7) % 3]));
+        q.dequeue(); // move the turn off the first lane
+        q.dequeue(Priority.WALK_IN);
+
+        List<String> order = names(q.snapshot());
+        for (int i = 0; i < order.size(); i++) {
+            assertEquals(OptionalLong.of(i + 1), q.position(order.get(i).toUpperCase()), order.get(i));
+        }
+        assertEquals(OptionalLong.empty(), q.position("nobody"));
+    }
+
+    @Test
+    void sequenceNumbersCarryTheirLane() {
+        Recorder r = new Recorder();
+        IndexedCustomerQueue q = new IndexedCustomerQueue(r);
+        for (Priority p : Priority.values()) {
+            assertEquals(p, IndexedCustomerQueue.laneOf(q.enqueue(customer("x", p))));
+        }
+        assertEquals(3, r.enqueued.size());
+    }
+
+    @Test
+    void clearReportsOneBoundPerLaneAndKeepsLaterEnqueues() {
+        Recorder r = new Recorder();
+        IndexedCustomerQueue q = new IndexedCustomerQueue(r);
+        long[] firsts = new long[3];
+        for (Priority p : Priority.values()) {
+            firsts[p.ordinal()] = q.enqueue(customer(p + "-1", p));
+            q.enqueue(customer(p + "-2", p));
+        }
+        q.clear();
+
+        assertEquals(0, q.size());
+        assertEquals(3, r.cleared.size());
+        for (Priority p : Priority.values()) {
+            long bound = r.cleared.get(p.ordinal());
+            assertEquals(p, IndexedCustomerQueue.laneOf(bound));
+            assertEquals(firsts[p.ordinal()] + 2, bound);
+            assertEquals(bound, q.clearedBelows()[p.ordinal()]);
+            assertEquals(bound, q.nextSeqs()[p.ordinal()]);
+        }
+
+        long after = q.enqueue(customer("late", Priority.VIP));
+        assertEquals(r.cleared.get(Priority.VIP.ordinal()).longValue(), after);
+        assertEquals(List.of("late"), names(q.snapshot()));
+    }
+
+    @Test
+    void clearBeforeOnlyTouchesItsLaneBelowTheBound() {
+        IndexedCustomerQueue q = new IndexedCustomerQueue(StoreListener.NONE);
+        long v0 = q.enqueue(customer("v0", Priority.VIP));
+        q.enqueue(customer("v1", Priority.VIP));
+        long v2 = q.enqueue(customer("v2", Priority.VIP));
+        q.enqueue(customer("w0", Priority.WALK_IN));
+
+        q.clearBefore(v2);
+        assertEquals(List.of("v2", "w0"), names(q.snapshot()));
+        assertEquals(v2, q.clearedBelows()[Priority.VIP.ordinal()]);
+
+        // a bound never moves back
+        q.clearBefore(v0);
+        assertEquals(v2, q.clearedBelows()[Priority.VIP.ordinal()]);
+        assertEquals(2, q.size());
+    }
+
+    @Test
+    void restoreIgnoresNumbersBelowTheClearBound() {
+        IndexedCustomerQueue q = new IndexedCustomerQueue(StoreListener.NONE);
+        long base = q.nextSeqs()[Priority.APPOINTMENT.ordinal()];
+        q.restoreCounters(base + 5, base + 3);
+
+        q.restore(base + 1, customer("gone", Priority.WALK_IN));
+        q.restore(base + 3, customer("kept", Priority.WALK_IN));
+        q.restore(base + 3, customer("duplicate", Priority.WALK_IN));
+        q.restore(base + 9, customer("later", Priority.WALK_IN));
+
+        // the lane comes from the number, not from the restored customer
+        assertEquals(List.of("kept", "later"), names(q.snapshot(Priority.APPOINTMENT)));
+        assertEquals(Priority.APPOINTMENT, q.snapshot().get(0).priority());
+        assertEquals(base + 10, q.nextSeqs()[Priority.APPOINTMENT.ordinal()]);
+        assertEquals(2, q.size());
+    }
+
+    @Test
+    void concurrentEnqueuesInOneLaneAreServedInNumberOrder() throws Exception {
+        Recorder r = new Recorder();
+        IndexedCustomerQueue q = new IndexedCustomerQueue(r);
+        int threads = 8, each = 500;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            workers.add(new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < each; i++) q.enqueue(customer(id + "-" + i, Priority.WALK_IN));
+            }));
+        }
+        workers.forEach(Thread::start);
+        start.countDown();
+        for (Thread w : workers) w.join();
+
+        // numbers are handed out in the order customers join the lane, without gaps
+        List<Long> reported = r.enqueued;
+        for (int i = 1; i < reported.size(); i++) assertEquals(reported.get(i - 1) + 1, reported.get(i));
+
+        int[] next = new int[threads];
+        for (String name : drain(q)) {
+            int dash = name.indexOf('-');
+            int t = Integer.parseInt(name.substring(0, dash));
+            assertEquals(next[t]++, Integer.parseInt(name.substring(dash + 1)), name);
+        }
+        assertEquals(reported, r.dequeued);
+    }
+
+    @Test
+    void enqueueBeyondCapacityIsRefusedBeforeItIsReported() {
+        Recorder r = new Recorder();
+        IndexedCustomerQueue q = new IndexedCustomerQueue(r);
+        q.setCapacity(2);
+        q.enqueue(customer("a", Priority.WALK_IN));
+        q.enqueue(customer("b", Priority.VIP));
+        assertThrows(QueueFullException.class, () -> q.enqueue(customer("c", Priority.APPOINTMENT)));
+        assertEquals(2, q.size());
+        assertEquals(2, r.enqueued.size());
+
+        q.dequeue();
+        q.enqueue(customer("c", Priority.APPOINTMENT));
+        assertEquals(2, q.size());
+    }
+
+    @Test
+    void failedReportGivesThePlaceAndNumberBack() {
+        AtomicBoolean fail = new AtomicBoolean(true);
+        Recorder r = new Recorder() {
+            @Override public void customerEnqueued(long seq, CustomerDTO customer) {
+                if (fail.getAndSet(false)) throw new IllegalStateException("log is down");
+                super.customerEnqueued(seq, customer);
+            }
+        };
+        IndexedCustomerQueue q = new IndexedCustomerQueue(r);
+        q.setCapacity(1);
+        long before = q.nextSeqs()[Priority.WALK_IN.ordinal()];
+
+        assertThrows(IllegalStateException.class, () -> q.enqueue(customer("a", Priority.WALK_IN)));
+        assertEquals(0, q.size());
+        assertTrue(q.snapshot().isEmpty());
+        assertEquals(OptionalLong.empty(), q.position("a"));
+
+        assertEquals(before, q.enqueue(customer("b", Priority.WALK_IN)));
+        assertEquals(List.of("b"), names(q.snapshot()));
+    }
+
+    @Test
+    void requeuePutsTheCustomerBackAtTheHeadOfTheirLane() {
+        Recorder r = new Recorder();
+        IndexedCustomerQueue q = new IndexedCustomerQueue(r);
+        q.setCapacity(2);
+        long first = q.enqueue(customer("a", Priority.VIP));
+        q.enqueue(customer("b", Priority.VIP));
+        CustomerDTO a = q.dequeue().orElseThrow();
+        q.enqueue(customer("c", Priority.VIP));
+
+        q.requeue(a); // not held to the capacity
+        assertEquals(List.of("a", "b", "c"), names(q.snapshot()));
+        assertEquals(first, r.enqueued.get(r.enqueued.size() - 1).longValue());
+        assertEquals(OptionalLong.of(1), q.position("a"));
+        assertEquals(3, q.size());
+    }
+
+    @Test
+    void requeueIntoAnEmptyLaneReusesTheLastNumber() {
+        Recorder r = new Recorder();
+        IndexedCustomerQueue q = new IndexedCustomerQueue(r);
+        long seq = q.enqueue(customer("a", Priority.APPOINTMENT));
+        q.requeue(q.dequeue().orElseThrow());
+        assertEquals(seq, r.enqueued.get(1).longValue());
+        assertEquals(List.of("a"), names(q.snapshot()));
+    }
+
+    @Test
+    void requeueBelowAClearBoundGoesToTheBack() {
+        Recorder r = new Recorder();
+        IndexedCustomerQueue q = new IndexedCustomerQueue(r);
+        q.enqueue(customer("a", Priority.WALK_IN));
+        CustomerDTO a = q.dequeue().orElseThrow();
+        q.clear();
+        long bound = r.cleared.get(Priority.WALK_IN.ordinal());
+
+        q.requeue(a);
+        assertEquals(bound, r.enqueued.get(1).longValue());
+        assertEquals(bound + 1, q.nextSeqs()[Priority.WALK_IN.ordinal()]);
+        assertEquals(List.of("a"), names(q.snapshot()));
+    }
+}
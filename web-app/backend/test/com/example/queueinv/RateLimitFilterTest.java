@@ -0,0 +1,194 @@
+package com.example.queueinv;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.EnumMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RateLimitFilterTest {
+
+    private static final String LOGIN = "/api/auth/login";
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @AfterEach
+    void clearLogin() {
+        SecurityContextHolder.clearContext();
+    }
+
+    // a slow sustained rate, so nothing refills while a test runs
+    private RateLimitFilter filter(int burst, ShardRouter shards) {
+        Map<RateLimitFilter.Budget, RateLimitFilter.Limit> limits = new EnumMap<>(RateLimitFilter.Budget.class);
+        for (RateLimitFilter.Budget b : RateLimitFilter.Budget.values()) limits.put(b, new RateLimitFilter.Limit(0.01, burst));
+        return new RateLimitFilter(limits, 1000, shards, registry);
+    }
+
+    private static MockHttpServletRequest request(String method, String path, String addr) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, path);
+        request.setRemoteAddr(addr);
+        return request;
+    }
+
+    // the status the request got, 200 if it went on down the chain
+    private static MockHttpServletResponse send(RateLimitFilter filter, HttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(request, response, chain);
+        assertEquals(response.getStatus() == 200, chain.getRequest() != null);
+        return response;
+    }
+
+    // the forwarding header a node signs its requests with, computed as ShardRouter documents it
+    private static String sign(long sentAt, String method, String path, String body) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(ShardRouterTest.SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        Base64.Encoder b64 = Base64.getUrlEncoder().withoutPadding();
+        String digest = b64.encodeToString(MessageDigest.getInstance("SHA-256").digest(body.getBytes(StandardCharsets.UTF_8)));
+        String signed = sentAt + "\n" + method + "\n" + path + "\n\n\n" + digest;
+        return sentAt + "." + b64.encodeToString(mac.doFinal(signed.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static String sign(long sentAt, String method, String path) throws Exception {
+        return sign(sentAt, method, path, "");
+    }
+
+    // the request as the rest of the chain sees it once ForwardedRequestFilter has checked it
+    private static HttpServletRequest checked(ShardRouter shards, MockHttpServletRequest request) throws Exception {
+        MockFilterChain chain = new MockFilterChain();
+        new ForwardedRequestFilter(shards).doFilter(request, new MockHttpServletResponse(), chain);
+        return (HttpServletRequest) chain.getRequest();
+    }
+
+    @Test
+    void admitsABurstThenAsksToRetryLater() throws Exception {
+        RateLimitFilter filter = filter(3, null);
+        for (int i = 0; i < 3; i++) assertEquals(200, send(filter, request("POST", LOGIN, "10.0.0.1")).getStatus());
+
+        MockHttpServletResponse rejected = send(filter, request("POST", LOGIN, "10.0.0.1"));
+        assertEquals(429, rejected.getStatus());
+        assertEquals("100", rejected.getHeader(HttpHeaders.RETRY_AFTER)); // one request's worth at 0.01/s
+        assertEquals(1.0, registry.get("queueinv.ratelimit.rejected").tag("budget", "auth").counter().count());
+    }
+
+    @Test
+    void callersAndBudgetsAreCountedSeparately() throws Exception {
+        RateLimitFilter filter = filter(1, null);
+        assertEquals(200, send(filter, request("POST", LOGIN, "10.0.0.1")).getStatus());
+        assertEquals(429, send(filter, request("POST", LOGIN, "10.0.0.1")).getStatus());
+
+        assertEquals(200, send(filter, request("POST", LOGIN, "10.0.0.2")).getStatus());
+        assertEquals(200, send(filter, request("POST", "/api/inventory", "10.0.0.1")).getStatus());
+        assertEquals(200, send(filter, request("GET", "/api/inventory/search", "10.0.0.1")).getStatus());
+
+        // logged in, a caller is the user wherever they connect from
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("ann", null, AuthorityUtils.NO_AUTHORITIES));
+        assertEquals(200, send(filter, request("POST", LOGIN, "10.0.0.1")).getStatus());
+        assertEquals(429, send(filter, request("POST", LOGIN, "10.0.0.3")).getStatus());
+    }
+
+    @Test
+    void readsAreNotLimited() throws Exception {
+        RateLimitFilter filter = filter(1, null);
+        for (int i = 0; i < 5; i++) assertEquals(200, send(filter, request("GET", "/api/inventory", "10.0.0.1")).getStatus());
+    }
+
+    @Test
+    void budgetOfRequests() {
+        assertEquals(RateLimitFilter.Budget.AUTH, RateLimitFilter.budgetOf(request("POST", "/api/auth/register", "")));
+        assertEquals(RateLimitFilter.Budget.SEARCH, RateLimitFilter.budgetOf(request("GET", "/api/queue/search", "")));
+        assertEquals(RateLimitFilter.Budget.MUTATION, RateLimitFilter.budgetOf(request("DELETE", "/api/inventory/milk", "")));
+        assertEquals(RateLimitFilter.Budget.MUTATION, RateLimitFilter.budgetOf(request("PUT", "/api/inventory/milk", "")));
+        assertNull(RateLimitFilter.budgetOf(request("GET", "/api/auth/me", "")));
+        assertNull(RateLimitFilter.budgetOf(request("POST", "/login", "")));
+
+        MockHttpServletRequest behindContext = request("POST", "/app/api/auth/login", "");
+        behindContext.setContextPath("/app");
+        assertEquals(RateLimitFilter.Budget.AUTH, RateLimitFilter.budgetOf(behindContext));
+    }
+
+    @Test
+    void forwardedHeaderMeansNothingWhenNotSharded() throws Exception {
+        RateLimitFilter filter = filter(1, null);
+        for (int i = 0; i < 3; i++) {
+            MockHttpServletRequest request = request("POST", LOGIN, "10.0.0.1");
+            request.addHeader(ShardRouter.FORWARDED_HEADER, sign(System.currentTimeMillis(), "POST", LOGIN));
+            assertEquals(i == 0 ? 200 : 429, send(filter, request).getStatus());
+        }
+    }
+
+    @Test
+    void onlySignedForwardsAreExempt() throws Exception {
+        ShardRouter shards = ShardRouterTest.router("http://a:1", "http://a:1", "http://b:1");
+        RateLimitFilter filter = filter(1, shards);
+        long now = System.currentTimeMillis();
+        assertEquals(200, send(filter, request("POST", LOGIN, "10.0.0.1")).getStatus());
+
+        for (int i = 0; i < 3; i++) {
+            MockHttpServletRequest signed = request("POST", LOGIN, "10.0.0.1");
+            signed.addHeader(ShardRouter.FORWARDED_HEADER, sign(now, "POST", LOGIN));
+            HttpServletRequest checked = checked(shards, signed);
+            assertTrue(shards.isForwarded(checked));
+            assertEquals(200, send(filter, checked).getStatus());
+        }
+
+        for (String forged : new String[]{"1", sign(now, "POST", "/api/auth/register"), sign(now, "GET", LOGIN),
+                sign(now - ShardRouter.MAX_FORWARD_AGE_MS - 1000, "POST", LOGIN), now + ".AAAA"}) {
+            MockHttpServletRequest request = request("POST", LOGIN, "10.0.0.1");
+            request.addHeader(ShardRouter.FORWARDED_HEADER, forged);
+            HttpServletRequest checked = checked(shards, request);
+            assertFalse(shards.isForwarded(checked), forged);
+            assertEquals(429, send(filter, checked).getStatus(), forged);
+        }
+    }
+
+    @Test
+    void signatureCoversTheCallersCredentials() throws Exception {
+        ShardRouter shards = ShardRouterTest.router("http://a:1", "http://a:1", "http://b:1");
+        MockHttpServletRequest request = request("POST", LOGIN, "10.0.0.1");
+        request.addHeader(ShardRouter.FORWARDED_HEADER, sign(System.currentTimeMillis(), "POST", LOGIN));
+        request.addHeader(HttpHeaders.AUTHORIZATION, "Bearer someone-else");
+        assertFalse(shards.isForwarded(checked(shards, request)));
+    }
+
+    @Test
+    void signatureCoversTheBody() throws Exception {
+        ShardRouter shards = ShardRouterTest.router("http://a:1", "http://a:1", "http://b:1");
+        String path = "/api/inventory/batch";
+        String sent = "{\"ops\":[{\"op\":\"DELETE\",\"name\":\"milk\"}]}";
+        String header = sign(System.currentTimeMillis(), "POST", path, sent);
+
+        MockHttpServletRequest same = request("POST", path, "10.0.0.1");
+        same.addHeader(ShardRouter.FORWARDED_HEADER, header);
+        same.setContent(sent.getBytes(StandardCharsets.UTF_8));
+        HttpServletRequest checked = checked(shards, same);
+        assertTrue(shards.isForwarded(checked));
+        // the body was read for the check, and can still be read by whoever handles the request
+        assertEquals(sent, new String(checked.getInputStream().readAllBytes(), StandardCharsets.UTF_8));
+
+        MockHttpServletRequest other = request("POST", path, "10.0.0.1");
+        other.addHeader(ShardRouter.FORWARDED_HEADER, header);
+        other.setContent(sent.replace("milk", "eggs").getBytes(StandardCharsets.UTF_8));
+        assertFalse(shards.isForwarded(checked(shards, other)));
+    }
+}
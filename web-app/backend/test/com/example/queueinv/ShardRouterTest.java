@@ -0,0 +1,144 @@
+package com.example.queueinv;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShardRouterTest {
+
+    static final String SECRET = "test-shard-secret-0123456789abcdef";
+    private static final int KEYS = 30_000;
+
+    static ShardRouter router(String self, String... nodes) {
+        return new ShardRouter(List.of(nodes), self, SECRET, new ObjectMapper());
+    }
+
+    private static String key(int i) {
+        return "item " + i;
+    }
+
+    @Test
+    void placementDependsOnlyOnTheKeyAndTheNodes() {
+        ShardRouter a = router("http://a:8080", "http://a:8080", "http://b:8080", "http://c:8080");
+        ShardRouter b = router("http://b:8080", "http://c:8080/", "http://b:8080", "http://a:8080");
+        for (int i = 0; i < KEYS; i += 7) assertEquals(a.ownerOf(key(i)), b.ownerOf(key(i)), key(i));
+        assertEquals(ShardRouter.hash("milk"), ShardRouter.hash("milk"));
+    }
+
+    @Test
+    void nodesGetFairShares() {
+        ShardRouter r = router("http://a:1", "http://a:1", "http://b:1", "http://c:1");
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < KEYS; i++) counts.merge(r.ownerOf(key(i)), 1, Integer::sum);
+        assertEquals(3, counts.size());
+        for (Map.Entry<String, Integer> e : counts.entrySet()) {
+            double share = e.getValue() / (double) KEYS;
+            assertTrue(share > 0.25 && share < 0.42, e.getKey() + " owns " + share);
+        }
+    }
+
+    @Test
+    void addingANodeOnlyMovesKeysToIt() {
+        ShardRouter three = router("http://a:1", "http://a:1", "http://b:1", "http://c:1");
+        ShardRouter four = router("http://a:1", "http://a:1", "http://b:1", "http://c:1", "http://d:1");
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            String before = three.ownerOf(key(i)), after = four.ownerOf(key(i));
+            if (!before.equals(after)) {
+                assertEquals("http://d:1", after, key(i));
+                moved++;
+            }
+        }
+        double share = moved / (double) KEYS;
+        assertTrue(share > 0.15 && share < 0.35, "moved " + share);
+    }
+
+    @Test
+    void queueLivesOnTheFirstNode() {
+        ShardRouter r = router("http://b:1/", "http://a:1", "http://b:1");
+        assertEquals("http://a:1", r.queueHome());
+        assertTrue(r.isSelf("http://b:1"));
+        assertFalse(r.isSelf(r.queueHome()));
+    }
+
+    @Test
+    void selfMustBeOneOfTheNodes() {
+        assertThrows(IllegalStateException.class, () -> router("http://x:1", "http://a:1", "http://b:1"));
+    }
+
+    @Test
+    void secretMustBeLongEnough() {
+        assertThrows(IllegalStateException.class,
+                () -> new ShardRouter(List.of("http://a:1"), "http://a:1", "short", new ObjectMapper()));
+        assertThrows(IllegalStateException.class,
+                () -> new ShardRouter(List.of("http://a:1"), "http://a:1", "", new ObjectMapper()));
+    }
+
+    // A stand-in for another node that answers every request with one status and body.
+    private static HttpServer node(int status, String body) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, bytes.length);
+            exchange.getResponseBody().write(bytes);
+            exchange.close();
+        });
+        server.start();
+        return server;
+    }
+
+    private static ResponseEntity<?> batchOnOtherNode(int status, String body) throws IOException {
+        HttpServer other = node(status, body);
+        try {
+            String url = "http://127.0.0.1:" + other.getAddress().getPort();
+            ShardRouter r = router("http://self:1", "http://self:1", url);
+            String name = "item 0";
+            for (int i = 1; !r.ownerOf(InventoryEngine.keyOf(name)).equals(url); i++) name = key(i);
+            BatchRequestDTO batch = new BatchRequestDTO(List.of(new BatchOpDTO(BatchOpType.SET, name, null, 3)), false);
+            return r.applyBatch(batch, new MockHttpServletRequest("POST", "/api/inventory/batch"), ops -> {
+                throw new AssertionError("nothing belongs to this node");
+            });
+        } finally {
+            other.stop(0);
+        }
+    }
+
+    @Test
+    void batchPartsAnsweredByOtherNodesAreMerged() throws Exception {
+        ResponseEntity<?> res = batchOnOtherNode(200,
+                "{\"applied\":true,\"results\":[{\"index\":0,\"ok\":true,\"qty\":3,\"error\":null}]}");
+        assertEquals(200, res.getStatusCode().value());
+        assertEquals(new BatchResultDTO(true, List.of(new BatchOpResultDTO(0, true, 3, null))), res.getBody());
+    }
+
+    @Test
+    void batchPartTurnedDownByAnotherNodeIsPassedOn() throws Exception {
+        ResponseEntity<?> res = batchOnOtherNode(400, "{\"error\":\"Malformed request body\"}");
+        assertEquals(400, res.getStatusCode().value());
+        assertEquals("{\"error\":\"Malformed request body\"}",
+                new String((byte[]) res.getBody(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void batchPartFailingOnAnotherNodeIsAShardError() {
+        ShardUnavailableException e = assertThrows(ShardUnavailableException.class,
+                () -> batchOnOtherNode(500, "{\"status\":500}"));
+        assertTrue(e.getMessage().endsWith("answered 500"), e.getMessage());
+    }
+}
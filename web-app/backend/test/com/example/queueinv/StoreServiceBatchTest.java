@@ -0,0 +1,51 @@
+package com.example.queueinv;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StoreServiceBatchTest {
+
+    private final StoreService store = new StoreService();
+
+    @AfterEach
+    void shutdown() throws IOException {
+        store.shutdown();
+    }
+
+    private static BatchOpDTO set(String name, int qty) {
+        return new BatchOpDTO(BatchOpType.SET, name, null, qty);
+    }
+
+    private static BatchOpDTO delete(String name) {
+        return new BatchOpDTO(BatchOpType.DELETE, name, null, null);
+    }
+
+    @Test
+    void versionMovesOnlyWhenSomethingWasApplied() {
+        long before = store.inventoryVersion();
+        BatchResultDTO nothing = store.applyBatch(List.of(delete("milk"), set("tea", -1)), false);
+        assertTrue(nothing.applied());
+        assertFalse(nothing.results().get(0).ok());
+        assertFalse(nothing.results().get(1).ok());
+        assertEquals(before, store.inventoryVersion());
+
+        store.applyBatch(List.of(delete("milk"), set("tea", 2)), false);
+        assertEquals(before + 1, store.inventoryVersion());
+    }
+
+    @Test
+    void rejectedAtomicBatchLeavesTheVersion() {
+        long before = store.inventoryVersion();
+        BatchResultDTO rejected = store.applyBatch(List.of(set("tea", 2), delete("milk")), true);
+        assertFalse(rejected.applied());
+        assertEquals(before, store.inventoryVersion());
+        assertEquals(0, store.listItems().size());
+    }
+}
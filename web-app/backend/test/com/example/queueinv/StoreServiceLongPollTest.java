@@ -0,0 +1,147 @@
+package com.example.queueinv;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StoreServiceLongPollTest {
+
+    private final StoreService store = new StoreService();
+
+    @AfterEach
+    void shutdown() throws IOException {
+        store.shutdown();
+    }
+
+    private static Optional<CustomerDTO> await(CompletableFuture<Optional<CustomerDTO>> f) throws Exception {
+        return f.get(5, TimeUnit.SECONDS);
+    }
+
+    private static List<String> names(List<CustomerDTO> customers) {
+        return customers.stream().map(CustomerDTO::name).toList();
+    }
+
+    @Test
+    void answersAtOnceWhenSomeoneIsWaiting() throws Exception {
+        store.enqueue(new CustomerDTO("ann", null));
+        CompletableFuture<Optional<CustomerDTO>> f = store.dequeue(null, 10_000L);
+        assertTrue(f.isDone());
+        assertEquals("ann", f.get().orElseThrow().name());
+    }
+
+    @Test
+    void zeroWaitNeverHoldsBack() throws Exception {
+        CompletableFuture<Optional<CustomerDTO>> f = store.dequeue(null, 0L);
+        assertTrue(f.isDone());
+        assertEquals(Optional.empty(), f.get());
+    }
+
+    @Test
+    void waiterIsServedByTheNextEnqueue() throws Exception {
+        CompletableFuture<Optional<CustomerDTO>> f = store.dequeue(null, 10_000L);
+        assertFalse(f.isDone());
+        store.enqueue(new CustomerDTO("bob", null));
+        assertEquals("bob", await(f).orElseThrow().name());
+        assertTrue(store.listQueue().isEmpty());
+    }
+
+    @Test
+    void waitersAreServedOldestFirst() throws Exception {
+        CompletableFuture<Optional<CustomerDTO>> first = store.dequeue(null, 10_000L);
+        CompletableFuture<Optional<CustomerDTO>> second = store.dequeue(null, 10_000L);
+        store.enqueue(new CustomerDTO("one", null));
+        assertEquals("one", await(first).orElseThrow().name());
+        assertFalse(second.isDone());
+        store.enqueue(new CustomerDTO("two", null));
+        assertEquals("two", await(second).orElseThrow().name());
+    }
+
+    @Test
+    void laneWaiterOnlyTakesItsLane() throws Exception {
+        CompletableFuture<Optional<CustomerDTO>> vip = store.dequeue(Priority.VIP, 10_000L);
+        store.enqueue(new CustomerDTO("walk", null, Priority.WALK_IN));
+        assertFalse(vip.isDone());
+        store.enqueue(new CustomerDTO("star", null, Priority.VIP));
+        assertEquals("star", await(vip).orElseThrow().name());
+        assertEquals(List.of("walk"), names(store.listQueue()));
+    }
+
+    @Test
+    void completesEmptyWhenTheTimeRunsOut() throws Exception {
+        long start = System.nanoTime();
+        CompletableFuture<Optional<CustomerDTO>> f = store.dequeue(null, 50L);
+        assertEquals(Optional.empty(), await(f));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+
+        // nobody is waiting any more, so the customer stays queued
+        store.enqueue(new CustomerDTO("late", null));
+        assertEquals(List.of("late"), names(store.listQueue()));
+    }
+
+    @Test
+    void cancellingWithdrawsTheWaiter() throws Exception {
+        CompletableFuture<Optional<CustomerDTO>> gone = store.dequeue(null, 10_000L);
+        CompletableFuture<Optional<CustomerDTO>> next = store.dequeue(null, 10_000L);
+        assertTrue(gone.cancel(true));
+
+        store.enqueue(new CustomerDTO("one", null));
+        assertEquals("one", await(next).orElseThrow().name());
+        store.enqueue(new CustomerDTO("two", null));
+        assertEquals(List.of("two"), names(store.listQueue()));
+    }
+
+    @Test
+    void rejectsWaitsOutOfRange() {
+        assertThrows(InvalidRequestException.class, () -> store.dequeue(null, -1L));
+        assertThrows(InvalidRequestException.class,
+                () -> store.dequeue(null, StoreService.MAX_DEQUEUE_WAIT_MS + 1));
+    }
+
+    // Waiters cancelled while customers arrive: each customer is either handed to a
+    // waiter that got it or still queued, never lost and never handed out twice.
+    @Test
+    void cancelledWaitersNeverLoseCustomers() throws Exception {
+        int rounds = 200, perRound = 4;
+        List<CompletableFuture<Optional<CustomerDTO>>> all = new ArrayList<>();
+        for (int r = 0; r < rounds; r++) {
+            List<CompletableFuture<Optional<CustomerDTO>>> round = new ArrayList<>();
+            for (int i = 0; i < perRound; i++) round.add(store.dequeue(null, 10_000L));
+            all.addAll(round);
+            CountDownLatch go = new CountDownLatch(1);
+            int base = r * perRound;
+            Thread canceller = new Thread(() -> {
+                try {
+                    go.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (CompletableFuture<Optional<CustomerDTO>> f : round) f.cancel(true);
+            });
+            canceller.start();
+            go.countDown();
+            for (int i = 0; i < perRound; i++) store.enqueue(new CustomerDTO("c" + (base + i), null));
+            canceller.join();
+        }
+
+        Set<String> seen = new HashSet<>();
+        for (CompletableFuture<Optional<CustomerDTO>> f : all) {
+            if (!f.isCancelled()) assertTrue(seen.add(await(f).orElseThrow().name()));
+        }
+        for (CustomerDTO c : store.listQueue()) assertTrue(seen.add(c.name()), c.name());
+        assertEquals(rounds * perRound, seen.size());
+    }
+}
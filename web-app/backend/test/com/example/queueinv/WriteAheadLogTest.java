@@ -0,0 +1,208 @@
+package com.example.queueinv;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WriteAheadLogTest {
+
+    @TempDir
+    Path dir;
+
+    // every replayed record, as text
+    static final class Recorder implements StoreListener {
+        final List<String> records = new ArrayList<>();
+
+        @Override public void itemSaved(String name, int qty) { records.add("saved " + name + " " + qty); }
+        @Override public void itemRemoved(String key) { records.add("removed " + key); }
+        @Override public void customerEnqueued(long seq, CustomerDTO c) { records.add("enqueued " + seq + " " + c.name() + " " + c.note()); }
+        @Override public void customerDequeued(long seq) { records.add("dequeued " + seq); }
+        @Override public void queueCleared(long bound) { records.add("cleared " + bound); }
+    }
+
+    private WriteAheadLog open(WriteAheadLog.Mode mode) throws IOException {
+        WriteAheadLog wal = new WriteAheadLog(dir, mode, 1);
+        wal.replay(StoreListener.NONE, 0);
+        return wal;
+    }
+
+    private List<String> replay(long fromGeneration) throws IOException {
+        Recorder r = new Recorder();
+        try (WriteAheadLog wal = new WriteAheadLog(dir, WriteAheadLog.Mode.FSYNC, 0)) {
+            wal.replay(r, fromGeneration);
+        }
+        return r.records;
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.sorted().toList();
+        }
+    }
+
+    @Test
+    void everyKindOfRecordRoundTrips() throws IOException {
+        try (WriteAheadLog wal = open(WriteAheadLog.Mode.FSYNC)) {
+            wal.itemSaved("Green Tea", 12);
+            wal.itemRemoved("black tea");
+            wal.customerEnqueued(7, new CustomerDTO("Zo\u00eb", "window seat"));
+            wal.customerDequeued(7);
+            wal.queueCleared(1L << 56);
+            wal.sync();
+        }
+        assertEquals(List.of("saved Green Tea 12", "removed black tea", "enqueued 7 Zo\u00eb window seat",
+                "dequeued 7", "cleared " + (1L << 56)), replay(0));
+    }
+
+    @Test
+    void syncedRecordsAreOnDiskBeforeClose() throws Exception {
+        int threads = 8, each = 200;
+        WriteAheadLog wal = open(WriteAheadLog.Mode.BATCHED);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            workers.add(new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < each; i++) {
+                    wal.itemSaved("t" + id, i);
+                    wal.sync();
+                }
+            }));
+        }
+        workers.forEach(Thread::start);
+        start.countDown();
+        for (Thread w : workers) w.join();
+
+        // read back while the writer is still open: only what sync() wrote out is there
+        List<String> records = replay(0);
+        wal.close();
+        assertEquals(threads * each, records.size());
+        int[] next = new int[threads];
+        for (String r : records) {
+            String[] f = r.split(" ");
+            int t = Integer.parseInt(f[1].substring(1));
+            assertEquals(next[t]++, Integer.parseInt(f[2]), r);
+        }
+    }
+
+    @Test
+    void asyncRecordsAreFlushedOnClose() throws IOException {
+        try (WriteAheadLog wal = open(WriteAheadLog.Mode.ASYNC)) {
+            for (int i = 0; i < 100; i++) wal.customerDequeued(i);
+            wal.sync();
+        }
+        List<String> records = replay(0);
+        assertEquals(100, records.size());
+        assertEquals("dequeued 99", records.get(99));
+    }
+
+    @Test
+    void tornTailIsCutOffOnReplay() throws IOException {
+        try (WriteAheadLog wal = open(WriteAheadLog.Mode.FSYNC)) {
+            wal.itemSaved("a", 1);
+            wal.itemSaved("b", 2);
+            wal.sync();
+        }
+        Path segment = segments().get(0);
+        long intact = Files.size(segment);
+        // a record header promising more than was written, as a crash mid-write leaves it
+        Files.write(segment, new byte[]{0, 0, 0, 40, 1, 2, 3, 4, 1, 0}, StandardOpenOption.APPEND);
+
+        Recorder r = new Recorder();
+        try (WriteAheadLog wal = new WriteAheadLog(dir, WriteAheadLog.Mode.FSYNC, 0)) {
+            wal.replay(r, 0);
+            assertEquals(intact, Files.size(segment));
+            wal.itemSaved("c", 3);
+            wal.sync();
+        }
+        assertEquals(List.of("saved a 1", "saved b 2"), r.records);
+        assertEquals(List.of("saved a 1", "saved b 2", "saved c 3"), replay(0));
+    }
+
+    @Test
+    void corruptRecordEndsTheLog() throws IOException {
+        try (WriteAheadLog wal = open(WriteAheadLog.Mode.FSYNC)) {
+            wal.itemSaved("a", 1);
+            wal.itemSaved("b", 2);
+            wal.sync();
+        }
+        Path segment = segments().get(0);
+        byte[] bytes = Files.readAllBytes(segment);
+        bytes[bytes.length - 1] ^= 1; // flip a bit in the last record's quantity
+        Files.write(segment, bytes);
+
+        assertEquals(List.of("saved a 1"), replay(0));
+    }
+
+    @Test
+    void damageBeforeTheLastSegmentIsAnError() throws IOException {
+        try (WriteAheadLog wal = open(WriteAheadLog.Mode.FSYNC)) {
+            wal.itemSaved("a", 1);
+            wal.roll();
+            wal.itemSaved("b", 2);
+            wal.sync();
+        }
+        Files.write(segments().get(0), new byte[]{0, 0, 0, 9}, StandardOpenOption.APPEND);
+
+        WriteAheadLog wal = new WriteAheadLog(dir, WriteAheadLog.Mode.FSYNC, 0);
+        assertThrows(IOException.class, () -> wal.replay(StoreListener.NONE, 0));
+    }
+
+    @Test
+    void rollStartsASegmentThatReplayCanStartFrom() throws IOException {
+        long generation;
+        try (WriteAheadLog wal = open(WriteAheadLog.Mode.BATCHED)) {
+            wal.itemSaved("before", 1);
+            generation = wal.roll();
+            wal.itemSaved("after", 2);
+            wal.sync();
+        }
+        assertEquals(2, segments().size());
+        assertEquals(List.of("saved before 1", "saved after 2"), replay(0));
+
+        // replaying from the new generation retires the older segment
+        assertEquals(List.of("saved after 2"), replay(generation));
+        assertEquals(1, segments().size());
+        assertTrue(segments().get(0).getFileName().toString().endsWith(generation + ".log"));
+    }
+
+    @Test
+    void deleteBeforeKeepsTheCurrentSegment() throws IOException {
+        try (WriteAheadLog wal = open(WriteAheadLog.Mode.FSYNC)) {
+            wal.itemSaved("a", 1);
+            wal.roll();
+            long current = wal.roll();
+            wal.itemSaved("b", 2);
+            wal.sync();
+            wal.deleteBefore(current);
+            assertEquals(1, segments().size());
+        }
+        assertEquals(List.of("saved b 2"), replay(0));
+    }
+
+    @Test
+    void closedLogRefusesAppends() throws IOException {
+        WriteAheadLog wal = open(WriteAheadLog.Mode.FSYNC);
+        wal.close();
+        assertThrows(IllegalStateException.class, () -> wal.itemSaved("a", 1));
+        assertFalse(segments().isEmpty());
+    }
+}
@@ -1,5 +1,5 @@
 import React, { useEffect, useState } from 'react';
-import { InventoryCard } from './components/InventoryCard';
+import { InventoryCard, PAGE_SIZE } from './components/InventoryCard';
 import { QueueCard } from './components/QueueCard';
 import { LoginPage } from './pages/LoginPage'; // Import the new login page
 import * as apiClient from './apiClient';
@@ -15,6 +15,7 @@ export type Customer = { name: string; note?: string };
  */
 const DashboardPage: React.FC<{ onLogout: () => void }> = ({ onLogout }) => {
   const [items, setItems] = useState<Item[]>([]);
+  const [itemsCursor, setItemsCursor] = useState<string | null>(null);
   const [queue, setQueue] = useState<Customer[]>([]);
   const [isLoading, setIsLoading] = useState(true);
   const [error, setError] = useState<string | null>(null);
@@ -24,11 +25,12 @@ const DashboardPage: React.FC<{ onLogout: () => void }> = ({ onLogout }) => {
     try {
       setIsLoading(true);
       setError(null);
-      const [inventoryData, queueData] = await Promise.all([
-        apiClient.getInventory(),
+      const [inventoryPage, queueData] = await Promise.all([
+        apiClient.getInventoryPage(PAGE_SIZE),
         apiClient.getQueue(),
       ]);
-      setItems(inventoryData);
+      setItems(inventoryPage.items);
+      setItemsCursor(inventoryPage.nextCursor);
       setQueue(queueData);
     } catch (err) {
       setError('Failed to connect to the API. Please ensure the backend server is running.');
@@ -79,6 +81,7 @@ const DashboardPage: React.FC<{ onLogout: () => void }> = ({ onLogout }) => {
         <div className="grid grid-cols-1 lg:grid-cols-2 gap-8">
           <InventoryCard
             initialItems={items}
+            initialCursor={itemsCursor}
             onDataChange={fetchData} // Pass the refresh function
           />
           <QueueCard
@@ -15,8 +15,41 @@ async function apiFetch(path: string, options?: RequestInit) {
     return response.json();
 }
 
+// Lists are revalidated with If-None-Match: when nothing changed the backend answers 304 with no body
+// and the copy kept here is returned instead. Only the most recent URLs are kept.
+const MAX_CACHED_LISTS = 20;
+const listCache = new Map<string, { etag: string; body: any; headers: Headers }>();
+
+async function conditionalGet(path: string) {
+    const url = `${API_BASE_URL}/api${path}`;
+    const cached = listCache.get(url);
+    const response = await fetch(url, cached ? { headers: { 'If-None-Match': cached.etag } } : undefined);
+    if (response.status === 304 && cached) {
+        return cached;
+    }
+    if (!response.ok) {
+        throw new Error(`API Error: ${response.statusText}`);
+    }
+    const entry = { etag: response.headers.get('ETag') ?? '', body: await response.json(), headers: response.headers };
+    listCache.delete(url);
+    if (entry.etag) {
+        listCache.set(url, entry);
+        if (listCache.size > MAX_CACHED_LISTS) listCache.delete(listCache.keys().next().value!);
+    }
+    return entry;
+}
+
 // --- Inventory Endpoints ---
-export const getInventory = () => apiFetch('/inventory');
+export const getInventory = async () => (await conditionalGet('/inventory')).body;
+
+// Fetches one sorted page of the inventory. Pass the returned nextCursor to get the following page;
+// it is null once the last page has been reached.
+export const getInventoryPage = async (limit: number, cursor?: string | null) => {
+    const params = new URLSearchParams({ limit: String(limit) });
+    if (cursor) params.set('cursor', cursor);
+    const { body, headers } = await conditionalGet(`/inventory?${params}`);
+    return { items: body, nextCursor: headers.get('X-Next-Cursor') };
+};
 export const addOrIncrementItem = (name: string, amount: number) =>
     apiFetch('/inventory/addOrIncrement', {
         method: 'POST',
@@ -27,11 +60,51 @@ export const deleteItem = (name: string) =>
     apiFetch(`/inventory/${encodeURIComponent(name)}`, { method: 'DELETE' });
 
 // --- Queue Endpoints ---
-export const getQueue = () => apiFetch('/queue');
-export const enqueueCustomer = (name: string, note?: string) =>
+// Each lane is FIFO; the backend serves the lanes in turn, weighted towards VIP.
+export type Priority = 'VIP' | 'APPOINTMENT' | 'WALK_IN';
+export const getQueue = async () => (await conditionalGet('/queue')).body;
+export const enqueueCustomer = (name: string, note?: string, priority: Priority = 'WALK_IN') =>
     apiFetch('/queue/enqueue', {
         method: 'POST',
         headers: { 'Content-Type': 'application/json' },
-        body: JSON.stringify({ name, note }),
+        body: JSON.stringify({ name, note, priority }),
     });
 export const dequeueCustomer = () => apiFetch('/queue/dequeue', { method: 'POST' });
+export const getQueuePosition = (name: string) =>
+    apiFetch(`/queue/position?name=${encodeURIComponent(name)}`);
+
+// --- Live Changes ---
+export type StoreEvent =
+    | { type: 'reset' }
+    | { type: 'item'; name: string; qty: number }
+    | { type: 'itemRemoved'; key: string }
+    | { type: 'enqueued'; seq: number; name: string; note: string; priority: Priority }
+    | { type: 'dequeued'; seq: number }
+    | { type: 'cleared'; bound: number };
+
+const EVENT_TYPES = ['reset', 'item', 'itemRemoved', 'enqueued', 'dequeued', 'cleared'] as const;
+const changeListeners = new Set<(event: StoreEvent) => void>();
+let changeSource: EventSource | null = null;
+
+// Subscribes to GET /api/events. All subscribers share one connection, which the browser
+// re-establishes (resuming where it stopped) if it drops. 'reset' means changes were
+// missed and the data should be reloaded. Returns a function that unsubscribes.
+export const subscribeToChanges = (listener: (event: StoreEvent) => void) => {
+    changeListeners.add(listener);
+    if (!changeSource) {
+        changeSource = new EventSource(`${API_BASE_URL}/api/events`);
+        for (const type of EVENT_TYPES) {
+            changeSource.addEventListener(type, (e) => {
+                const event = { ...JSON.parse((e as MessageEvent).data), type } as StoreEvent;
+                changeListeners.forEach((l) => l(event));
+            });
+        }
+    }
+    return () => {
+        changeListeners.delete(listener);
+        if (changeListeners.size === 0 && changeSource) {
+            changeSource.close();
+            changeSource = null;
+        }
+    };
+};
@@ -12,6 +12,8 @@ interface DataTableProps<T extends TitledObject> {
   data: T[];
   renderRow: (item: T, index: number) => React.ReactNode;
   emptyStateMessage: string;
+  hasMore?: boolean;
+  onLoadMore?: () => void;
 }
 
 /**
@@ -20,12 +22,16 @@ interface DataTableProps<T extends TitledObject> {
  * @param data - The array of data to display.
  * @param renderRow - A function that renders a single <tr> element for a data item.
  * @param emptyStateMessage - The message to display when there is no data.
+ * @param hasMore - Whether the server has more rows after the ones in `data`.
+ * @param onLoadMore - Called when the user asks for the next page.
  */
 export const DataTable = <T extends TitledObject>({
   columns,
   data,
   renderRow,
   emptyStateMessage,
+  hasMore = false,
+  onLoadMore,
 }: DataTableProps<T>) => {
   return (
     <div className="max-h-80 overflow-auto rounded-xl border border-gray-200 dark:border-gray-800">
@@ -49,6 +55,15 @@ export const DataTable = <T extends TitledObject>({
           ) : (
             data.map(renderRow)
           )}
+          {hasMore && onLoadMore && (
+            <tr>
+              <td className="px-4 py-2 text-center" colSpan={columns.length}>
+                <button className="text-indigo-600 hover:underline" onClick={onLoadMore}>
+                  Load more
+                </button>
+              </td>
+            </tr>
+          )}
         </tbody>
       </table>
     </div>
@@ -7,26 +7,57 @@ import * as apiClient from '../apiClient';
 // Types
 type Item = { name: string; qty: number };
 
+// Rows fetched per page; the server caps this at 1000.
+export const PAGE_SIZE = 200;
+
+// Where an item with this lowercase name belongs in a list kept in the server's order.
+const sortedIndex = (list: Item[], key: string) => {
+  let lo = 0;
+  let hi = list.length;
+  while (lo < hi) {
+    const mid = (lo + hi) >>> 1;
+    if (list[mid].name.toLowerCase() < key) lo = mid + 1;
+    else hi = mid;
+  }
+  return lo;
+};
+
 interface InventoryCardProps {
   initialItems: Item[];
+  initialCursor: string | null;
 }
 
-export const InventoryCard: React.FC<InventoryCardProps> = ({ initialItems }) => {
+export const InventoryCard: React.FC<InventoryCardProps> = ({ initialItems, initialCursor }) => {
   const [items, setItems] = useState<Item[]>(initialItems);
   const [itemName, setItemName] = useState('');
   const [itemQty, setItemQty] = useState(1);
   const [itemSearch, setItemSearch] = useState('');
+  const [nextCursor, setNextCursor] = useState<string | null>(initialCursor);
+  const nextCursorRef = React.useRef(nextCursor);
+  nextCursorRef.current = nextCursor;
 
   const refreshInventory = async () => {
     try {
-      const freshItems = await apiClient.getInventory();
-      setItems(freshItems);
+      const page = await apiClient.getInventoryPage(PAGE_SIZE);
+      setItems(page.items);
+      setNextCursor(page.nextCursor);
     } catch (error) {
       console.error("Failed to refresh inventory:", error);
       // Optionally show an error message to the user
     }
   };
 
+  const loadMore = async () => {
+    if (!nextCursor) return;
+    try {
+      const page = await apiClient.getInventoryPage(PAGE_SIZE, nextCursor);
+      setItems((prev) => [...prev, ...page.items]);
+      setNextCursor(page.nextCursor);
+    } catch (error) {
+      console.error("Failed to load more inventory:", error);
+    }
+  };
+
   const handleAddOrIncrement = async () => {
     const n = itemName.trim();
     const q = Math.max(1, Number(itemQty) || 1);
@@ -51,7 +82,29 @@ export const InventoryCard: React.FC<InventoryCardProps> = ({ initialItems }) =>
   // Effect to update internal state if the initial prop changes
   React.useEffect(() => {
     setItems(initialItems);
-  }, [initialItems]);
+    setNextCursor(initialCursor);
+  }, [initialItems, initialCursor]);
+
+  // Apply changes pushed by the server (including other users' edits) as they happen.
+  // New items are only added when they fall inside the pages loaded so far.
+  React.useEffect(() => apiClient.subscribeToChanges((event) => {
+    if (event.type === 'reset') {
+      refreshInventory();
+    } else if (event.type === 'item') {
+      const key = event.name.toLowerCase();
+      setItems((prev) => {
+        const i = prev.findIndex((it) => it.name.toLowerCase() === key);
+        if (i >= 0) return prev.map((it, j) => (j === i ? { name: event.name, qty: event.qty } : it));
+        const last = prev[prev.length - 1];
+        const loaded = nextCursorRef.current === null || (last !== undefined && key < last.name.toLowerCase());
+        if (!loaded) return prev;
+        const at = sortedIndex(prev, key);
+        return [...prev.slice(0, at), { name: event.name, qty: event.qty }, ...prev.slice(at)];
+      });
+    } else if (event.type === 'itemRemoved') {
+      setItems((prev) => prev.filter((it) => it.name.toLowerCase() !== event.key));
+    }
+  }), []);
 
   return (
     <Card className="p-6">
@@ -78,6 +131,8 @@ export const InventoryCard: React.FC<InventoryCardProps> = ({ initialItems }) =>
         ]}
         data={filteredItems}
         emptyStateMessage="No items yet."
+        hasMore={nextCursor !== null}
+        onLoadMore={loadMore}
         renderRow={(it) => (
           <tr key={it.name} className="border-t border-gray-100 dark:border-zinc-800">
             <td className="px-4 py-2 font-medium">{it.name}</td>